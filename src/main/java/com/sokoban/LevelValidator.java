@@ -0,0 +1,319 @@
+package com.sokoban;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.LevelData;
+import com.sokoban.model.XsbReader;
+import com.sokoban.solver.Solver;
+import com.sokoban.solver.SolverResult;
+import com.sokoban.solver.TranspositionTable;
+
+/**
+ * 关卡包批量校验入口，在无图形界面的构建机上对一批地图逐一求解，输出 CSV 或 JSON 报告
+ * 关卡来源可以是一个目录中的全部 .map 文件、一个标准 XSB/SOK 关卡集，也可以是类路径 /asset/maps/ 下的一段关卡编号。
+ * 关卡集边读边提交，同时等待求解的关卡数不超过线程数的两倍，几千关的合集也不会一次全部载入内存。
+ * 所有关卡提交到固定线程数的线程池中并发求解，每关单线程搜索，并有独立的时间和内存预算，
+ * 某一关搜索空间过大只会占满自己的预算，不会拖住其他关卡。
+ * 任一关卡未能求解时进程以状态码 1 退出，可直接作为发布新关卡包前的检查步骤
+ *
+ * 用法：java -cp target/classes com.sokoban.LevelValidator
+ *          [--dir 目录 | --xsb 关卡集文件 | --range 起始-结束] [--threads 线程数] [--seconds 单关时限秒]
+ *          [--memory 单关内存MB] [--format csv|json] [--out 报告文件]
+ */
+public class LevelValidator {
+    private static final long GRACE_MILLIS = 5_000L;  // 求解器自身检查时限之外的等待余量
+    private static final String USAGE = "用法：java -cp target/classes com.sokoban.LevelValidator"
+            + " [--dir 目录 | --xsb 关卡集文件 | --range 起始-结束] [--threads 线程数] [--seconds 单关时限秒]"
+            + " [--memory 单关内存MB] [--format csv|json] [--out 报告文件]";
+
+    /**
+     * 单个关卡的校验结果
+     */
+    private static final class Entry {
+        final int level;
+        final String source;
+        final File file;   // 类路径关卡和关卡集中的关卡为 null
+        LevelData data;    // 关卡集中已读入的关卡，求解后释放
+        String status;
+        int pushes, moves;
+        long nodes, wallMillis;
+        volatile long startNanos;  // 开始求解的时间，尚未开始为 0
+
+        Entry(int level, String source, File file) {
+            this.level = level;
+            this.source = source;
+            this.file = file;
+        }
+
+        /**
+         * 等待超时时的结果，耗时记到此刻为止，尚未开始求解时为 0
+         */
+        Entry limit() {
+            Entry e = new Entry(level, source, file);
+            e.status = SolverResult.Status.LIMIT.name();
+            long start = startNanos;
+            e.wallMillis = start == 0 ? 0 : (System.nanoTime() - start) / 1_000_000L;
+            return e;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        File dir = null;
+        File xsb = null;
+        int from = 1, to = 50;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seconds = 60;
+        long memoryMb = -1;
+        String format = "csv";
+        String out = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("参数 " + args[i] + " 缺少取值\n" + USAGE);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--dir":
+                    dir = new File(value);
+                    break;
+                case "--xsb":
+                    xsb = new File(value);
+                    break;
+                case "--range":
+                    String[] range = value.split("-");
+                    from = Integer.parseInt(range[0].trim());
+                    to = Integer.parseInt(range[range.length - 1].trim());
+                    break;
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--seconds":
+                    seconds = Long.parseLong(value);
+                    break;
+                case "--memory":
+                    memoryMb = Long.parseLong(value);
+                    break;
+                case "--format":
+                    format = value.toLowerCase();
+                    break;
+                case "--out":
+                    out = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i] + "\n" + USAGE);
+            }
+        }
+
+        if (memoryMb < 0) {
+            // 默认把最大堆平均分给各个线程
+            memoryMb = Runtime.getRuntime().maxMemory() / threads / (1024 * 1024);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "level-validator");
+            t.setDaemon(true);  // 超时未返回的关卡不阻止进程退出
+            return t;
+        });
+        long timeLimit = seconds * 1000;
+        long budget = memoryMb * 1024 * 1024;
+        List<Entry> entries = new ArrayList<>();
+        List<Future<Entry>> futures = new ArrayList<>();
+        if (xsb != null) {
+            // 边读边提交，信号量限制已读入但尚未求解完的关卡数
+            Semaphore pending = new Semaphore(threads * 2);
+            try (XsbReader reader = XsbReader.open(xsb.toPath())) {
+                LevelData data;
+                while (true) {
+                    pending.acquire();
+                    if ((data = reader.next()) == null) break;
+                    String title = reader.getTitle();
+                    Entry entry = new Entry(data.level, xsb.getPath() + "#" + data.level
+                            + (title != null ? " " + title : ""), null);
+                    entry.data = data;
+                    entries.add(entry);
+                    futures.add(executor.submit(() -> {
+                        try {
+                            return validate(entry, timeLimit, budget);
+                        } finally {
+                            pending.release();
+                        }
+                    }));
+                }
+            }
+        } else {
+            if (dir != null) {
+                File[] maps = dir.listFiles((d, name) -> name.endsWith(".map"));
+                if (maps == null) {
+                    throw new IOException("目录不存在: " + dir);
+                }
+                Arrays.sort(maps);
+                for (File file : maps) {
+                    entries.add(new Entry(levelNumber(file, entries.size() + 1), file.getPath(), file));
+                }
+            } else {
+                for (int level = from; level <= to; level++) {
+                    entries.add(new Entry(level, String.format(LevelData.LEVEL_MAP_PATH, level), null));
+                }
+            }
+            for (Entry entry : entries) {
+                futures.add(executor.submit(() -> validate(entry, timeLimit, budget)));
+            }
+        }
+        executor.shutdown();
+
+        // 所有关卡按时限排满线程池所需的时间，超过后仍未返回的关卡记为达到上限，只作为求解器卡住时的兜底
+        long rounds = (entries.size() + threads - 1) / threads;
+        long deadline = System.currentTimeMillis() + rounds * timeLimit + GRACE_MILLIS;
+        List<Entry> report = new ArrayList<>();
+        boolean passed = true;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            Future<Entry> future = futures.get(i);
+            try {
+                long wait = Math.max(deadline - System.currentTimeMillis(), 0);
+                entry = future.get(wait, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                entry = entry.limit();
+            } catch (ExecutionException e) {
+                System.err.println("关卡 " + entry.source + " 校验失败: " + e.getCause());
+                entry.status = "ERROR";
+            }
+            report.add(entry);
+            if (!SolverResult.Status.SOLVED.name().equals(entry.status)) passed = false;
+        }
+
+        try (PrintStream ps = out == null ? new PrintStream(System.out, true, StandardCharsets.UTF_8)
+                : new PrintStream(new File(out), StandardCharsets.UTF_8)) {
+            if ("json".equals(format)) {
+                writeJson(report, ps);
+            } else {
+                writeCsv(report, ps);
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * 求解一个关卡并把结果写入 entry
+     * 内存预算的四分之一给置换表（每条 16 字节），其余按每个节点的存储开销估算为节点上限
+     * @return 写入结果后的 entry
+     */
+    private static Entry validate(Entry entry, long timeLimitMillis, long budgetBytes) {
+        long begin = System.nanoTime();
+        entry.startNanos = begin;
+        try {
+            LevelData data = entry.data != null ? entry.data
+                    : entry.file == null ? LevelData.load(entry.level)
+                    : LevelData.parse(entry.level, new FileInputStream(entry.file));
+            entry.data = null;
+            int tableEntries = (int) Math.min(TranspositionTable.MAX_ENTRIES, Long.highestOneBit(Math.max(budgetBytes / 4 / 16, 1024)));
+            long nodeBytes = BoardState.packedLength(data.map.getLayout()) * 8L + 16;
+            SolverResult result = new Solver(data)
+                    .setTimeLimitMillis(timeLimitMillis)
+                    .setTableEntries(tableEntries)
+                    .setMaxNodes(Math.max(budgetBytes - tableEntries * 16L, 0) / nodeBytes)
+                    .solve();
+            entry.status = result.status.name();
+            entry.pushes = result.pushes;
+            entry.moves = result.moves;
+            entry.nodes = result.nodes;
+        } catch (IOException e) {
+            entry.status = "ERROR";
+            System.err.println("关卡 " + entry.source + " 读取失败: " + e.getMessage());
+        } catch (OutOfMemoryError e) {
+            entry.status = SolverResult.Status.LIMIT.name();
+        }
+        entry.wallMillis = (System.nanoTime() - begin) / 1_000_000L;
+        return entry;
+    }
+
+    /**
+     * 从文件名中取出关卡编号，例如 12.map 为 12，取不到时使用文件的序号
+     */
+    private static int levelNumber(File file, int fallback) {
+        String digits = file.getName().replaceAll("\\D", "");
+        if (digits.isEmpty() || digits.length() > 9) return fallback;
+        return Integer.parseInt(digits);
+    }
+
+    private static void writeCsv(List<Entry> entries, PrintStream ps) {
+        ps.println("level,source,status,pushes,moves,nodes,wall_millis");
+        for (Entry e : entries) {
+            ps.printf("%d,%s,%s,%d,%d,%d,%d%n",
+                    e.level, csvField(e.source), e.status, e.pushes, e.moves, e.nodes, e.wallMillis);
+        }
+    }
+
+    /**
+     * 按 RFC 4180 转义 CSV 字段：含逗号、双引号或换行时用双引号括起，字段中的双引号写两次
+     */
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void writeJson(List<Entry> entries, PrintStream ps) {
+        ps.println("[");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            ps.printf("  {\"level\": %d, \"source\": \"%s\", \"status\": \"%s\", \"solvable\": %b, "
+                            + "\"pushes\": %d, \"moves\": %d, \"nodes\": %d, \"wallMillis\": %d}%s%n",
+                    e.level, jsonString(e.source), e.status,
+                    SolverResult.Status.SOLVED.name().equals(e.status),
+                    e.pushes, e.moves, e.nodes, e.wallMillis, i + 1 < entries.size() ? "," : "");
+        }
+        ps.println("]");
+    }
+
+    /**
+     * 转义 JSON 字符串内容：反斜杠、双引号和 U+0000 到 U+001F 的控制字符
+     */
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
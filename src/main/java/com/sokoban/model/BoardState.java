@@ -0,0 +1,217 @@
+package com.sokoban.model;
+
+import java.util.Arrays;
+
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 紧凑的局面状态：箱子占用位图加男孩格子下标
+ * 20x20 地图的 400 个格子用 7 个 long 表示，箱子查询、移动判定和胜利判定
+ * 都只需要几次位运算，过程中不分配对象，可以打包进 long 数组大量保存。
+ * 在目标点上的箱子数随箱子移动增量维护，胜利判定是 O(1) 的
+ */
+public final class BoardState implements Direction {
+    // move/tryMove 的返回值
+    public static final int MOVE_BLOCKED = 0, MOVE_WALK = 1, MOVE_PUSH = 2;
+
+    private final MapLayout layout;
+    private final long[] boxes;  // 箱子占用位图，第 i 位对应格子 i
+    private int player;          // 男孩所在格子下标
+    private int boxCount;        // 箱子数量
+    private int boxesOnTarget;   // 位于目标点上的箱子数量
+
+    /**
+     * 创建空局面
+     * @param layout 地图布局
+     */
+    public BoardState(MapLayout layout) {
+        this.layout = layout;
+        this.boxes = new long[layout.words];
+    }
+
+    /**
+     * 复制局面
+     * @param other 被复制的局面
+     */
+    public BoardState(BoardState other) {
+        this.layout = other.layout;
+        this.boxes = other.boxes.clone();
+        this.player = other.player;
+        this.boxCount = other.boxCount;
+        this.boxesOnTarget = other.boxesOnTarget;
+    }
+
+    /**
+     * 打包后占用的 long 个数：箱子位图加一个男孩位置
+     * @param layout 地图布局
+     * @return long 个数
+     */
+    public static int packedLength(MapLayout layout) {
+        return layout.words + 1;
+    }
+
+    public MapLayout getLayout() {
+        return layout;
+    }
+
+    public int getPlayer() {
+        return player;
+    }
+
+    public void setPlayer(int player) {
+        this.player = player;
+    }
+
+    public int getBoxCount() {
+        return boxCount;
+    }
+
+    /**
+     * 获取位于目标点上的箱子数量
+     * @return 箱子数量
+     */
+    public int getBoxesOnTarget() {
+        return boxesOnTarget;
+    }
+
+    /**
+     * 判断格子上是否有箱子
+     * @param index 格子下标
+     * @return 是否有箱子
+     */
+    public boolean hasBox(int index) {
+        return (boxes[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 在格子上放置箱子
+     * @param index 格子下标
+     */
+    public void addBox(int index) {
+        if (!hasBox(index)) {
+            boxes[index >>> 6] |= 1L << index;
+            boxCount++;
+            if (layout.isTarget(index)) boxesOnTarget++;
+        }
+    }
+
+    /**
+     * 移走格子上的箱子
+     * @param index 格子下标
+     */
+    public void removeBox(int index) {
+        if (hasBox(index)) {
+            boxes[index >>> 6] &= ~(1L << index);
+            boxCount--;
+            if (layout.isTarget(index)) boxesOnTarget--;
+        }
+    }
+
+    /**
+     * 把箱子从一个格子移到另一个格子，调用方保证 from 有箱子、to 为空
+     * @param from 原格子
+     * @param to 新格子
+     */
+    public void moveBox(int from, int to) {
+        boxes[from >>> 6] &= ~(1L << from);
+        boxes[to >>> 6] |= 1L << to;
+        if (layout.isTarget(from)) boxesOnTarget--;
+        if (layout.isTarget(to)) boxesOnTarget++;
+    }
+
+    /**
+     * 查找下标不小于 from 的下一个箱子，用于遍历所有箱子
+     * @param from 起始格子下标
+     * @return 箱子所在格子下标，没有则返回 -1
+     */
+    public int nextBox(int from) {
+        if (from >= layout.size) return -1;
+        int w = from >>> 6;
+        long bits = boxes[w] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++w == boxes.length) return -1;
+            bits = boxes[w];
+        }
+    }
+
+    /**
+     * 判断男孩向指定方向移动的结果，不修改局面
+     * 规则与 GameLevel 一致：前方是墙则不动；前方有箱子时，箱子前方必须是空的通道或目标点
+     * @param direction 方向
+     * @return MOVE_BLOCKED、MOVE_WALK 或 MOVE_PUSH
+     */
+    public int tryMove(int direction) {
+        int n = layout.step(player, direction);
+        if (n < 0) return MOVE_BLOCKED;
+        if (!hasBox(n)) return MOVE_WALK;
+        int dest = layout.step(n, direction);
+        return dest >= 0 && !hasBox(dest) ? MOVE_PUSH : MOVE_BLOCKED;
+    }
+
+    /**
+     * 让男孩向指定方向移动，必要时推动箱子
+     * @param direction 方向
+     * @return MOVE_BLOCKED、MOVE_WALK 或 MOVE_PUSH
+     */
+    public int move(int direction) {
+        int result = tryMove(direction);
+        if (result != MOVE_BLOCKED) {
+            int n = layout.step(player, direction);
+            if (result == MOVE_PUSH) {
+                moveBox(n, layout.step(n, direction));
+            }
+            player = n;
+        }
+        return result;
+    }
+
+    /**
+     * 判断是否所有箱子都在目标点上
+     * @return 是否过关
+     */
+    public boolean isSolved() {
+        return boxesOnTarget == boxCount;
+    }
+
+    /**
+     * 把局面写入 long 数组
+     * @param dst 目标数组
+     * @param offset 起始位置，共写入 packedLength 个 long
+     */
+    public void pack(long[] dst, int offset) {
+        System.arraycopy(boxes, 0, dst, offset, boxes.length);
+        dst[offset + boxes.length] = player;
+    }
+
+    /**
+     * 从 long 数组读取局面
+     * @param src 源数组
+     * @param offset 起始位置
+     */
+    public void unpack(long[] src, int offset) {
+        int count = 0, onTarget = 0;
+        for (int w = 0; w < boxes.length; w++) {
+            boxes[w] = src[offset + w];
+            count += Long.bitCount(boxes[w]);
+            onTarget += Long.bitCount(boxes[w] & layout.targetWord(w));
+        }
+        player = (int) src[offset + boxes.length];
+        boxCount = count;
+        boxesOnTarget = onTarget;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BoardState)) return false;
+        BoardState s = (BoardState) o;
+        return player == s.player && Arrays.equals(boxes, s.boxes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(boxes) + player;
+    }
+}
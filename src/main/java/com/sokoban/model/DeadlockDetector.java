@@ -0,0 +1,115 @@
+package com.sokoban.model;
+
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 冻结死锁检测器
+ * 一个箱子在水平和竖直两个方向上都无法再移动时称为“冻结”。某个方向被挡住的条件：
+ * 两侧任一侧是墙；或两侧都是静态死格；或任一侧是本身也被冻结的箱子。
+ * 判断相邻箱子时把当前箱子视为墙，因此 2x2 方块、贴墙冻结以及互相卡住的箱子链都能识别。
+ * 冻结的箱子组中只要有一个不在目标点上，本关就已无解。
+ *
+ * 检测过程只使用构造时分配的数组，不产生垃圾，求解器可以在每个节点上调用；
+ * 同一个实例不是线程安全的，多线程时每个线程各用一个
+ */
+public final class DeadlockDetector implements Direction {
+    private final MapLayout layout;
+    private final int[] onPath;   // onPath[i] == stamp 表示该箱子正在递归判定中，视为墙
+    private int stamp = 0;
+    private boolean offTarget;    // 当前冻结组中是否有不在目标点上的箱子
+    private BoardState state;
+
+    public DeadlockDetector(MapLayout layout) {
+        this.layout = layout;
+        this.onPath = new int[layout.size];
+    }
+
+    /**
+     * 判断刚被推到指定格子的箱子是否造成死锁
+     * @param state 推动后的局面
+     * @param box 箱子所在格子
+     * @return 是否死锁
+     */
+    public boolean isDeadlockAfterPush(BoardState state, int box) {
+        if (layout.isDead(box)) return true;
+        return isFrozenOffTarget(state, box);
+    }
+
+    /**
+     * 判断局面中是否存在死锁（静态死格上的箱子或冻结且不在目标点上的箱子）
+     * @param state 局面
+     * @return 是否死锁
+     */
+    public boolean isDeadlocked(BoardState state) {
+        for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+            if (!layout.isTarget(box) && isDeadlockAfterPush(state, box)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 找出所有处于死锁中的箱子（在静态死格上，或冻结且所在冻结组有箱子不在目标点上）
+     * @param state 局面
+     * @param out 输出位图，长度至少为 layout.words，方法会先清空
+     * @return 死锁箱子数量
+     */
+    public int findDeadlockedBoxes(BoardState state, long[] out) {
+        java.util.Arrays.fill(out, 0, layout.words, 0L);
+        int count = 0;
+        for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+            if (isDeadlockAfterPush(state, box)) {
+                out[box >>> 6] |= 1L << box;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 判断箱子是否冻结，且它所在的冻结组里有箱子不在目标点上
+     */
+    private boolean isFrozenOffTarget(BoardState state, int box) {
+        this.state = state;
+        if (++stamp == 0) {
+            java.util.Arrays.fill(onPath, 0);
+            stamp = 1;
+        }
+        offTarget = false;
+        boolean frozen = frozen(box);
+        this.state = null;
+        return frozen && offTarget;
+    }
+
+    /**
+     * 递归判断箱子是否在两个方向上都被挡住
+     */
+    private boolean frozen(int box) {
+        boolean saved = offTarget;
+        onPath[box] = stamp;
+        boolean result = blocked(box, LEFT, RIGHT) && blocked(box, UP, DOWN);
+        onPath[box] = 0;
+        if (result) {
+            if (!layout.isTarget(box)) offTarget = true;
+        } else {
+            // 该箱子没有冻结，递归过程中记录的结论不成立
+            offTarget = saved;
+        }
+        return result;
+    }
+
+    /**
+     * 判断箱子在某条轴线上是否无法移动
+     */
+    private boolean blocked(int box, int d1, int d2) {
+        int n1 = layout.step(box, d1);
+        int n2 = layout.step(box, d2);
+        if (n1 < 0 || n2 < 0) return true;
+        if (layout.isDead(n1) && layout.isDead(n2)) return true;
+        return blockedBy(n1) || blockedBy(n2);
+    }
+
+    private boolean blockedBy(int cell) {
+        if (!state.hasBox(cell)) return false;
+        return onPath[cell] == stamp || frozen(cell);
+    }
+}
@@ -4,6 +4,7 @@ import javax.swing.*;
 
 import com.sokoban.util.R;
 import com.sokoban.util.GameSave;
+import com.sokoban.util.ProgressStore;
 import com.sokoban.view.GameWindow;
 import com.sokoban.view.NeonDialogUI;
 
@@ -38,48 +39,51 @@ public class Game {
 
     /**
      * 撤销上一步操作
-     * 逻辑：
-     * 1. 如果没有移动过（步数不足），提示不能回退。
-     * 2. 如果回退次数达到3次，禁止回退并提示。
-     * 3. 正常回退，消耗一次机会，步数减一，弹窗2秒消失。
+     * 撤销次数不限，撤销过的步骤保留在历史树中，可以重做或切换到其他分支
      */
     public void previousMove() {
         GameLevel level = this.getCurrentLevel();
 
-        // 1. 检查是否有步数可退
-        // moveStack 初始会放一个 null，所以 size 为 1 代表初始状态
-        if (level.moveStack.isEmpty()) {
+        // 检查是否有步数可退
+        if (level.getHistory().isEmpty()) {
             NeonDialogUI.showToast(win, "你还没有移动，无法回退！", "提示", 2000);
             return;
         }
 
-        // 2. 检查回退次数限制 (3次)
-        if (level.getUndoUsedCount() >= 3) {
-            int option = NeonDialogUI.showConfirm(
-                    win,
-                    "回退次数(3次)已使用完。<br>是否重新开始本关卡？",
-                    "次数耗尽"
-            );
-            if (option == JOptionPane.YES_OPTION) {
-                this.reloadLevel();
-            }
-            return;
-        }
-
-        // 3. 执行回退
         level.previousMove();
-        level.incrementUndoUsedCount(); // 增加使用计数
         this.win.repaint();
 
         // 自动保存
         GameSave.saveGame(this);
+    }
 
-        // 4. 显示 Toast 提示 (2秒自动消失)
-        // 计算剩余次数
-        int used = level.getUndoUsedCount();
-        String msg = String.format("已回退 <span style='color:#00f3ff; font-weight:bold;'>%d</span> / 3 次", used);
+    /**
+     * 重做上一次撤销的步骤
+     * 重做按原方向走一步，与玩家按方向键完全相同，历史树中沿已有分支前进
+     */
+    public void nextMove() {
+        int move = this.currentLevel.getHistory().peekRedo();
+        if (move < 0) {
+            NeonDialogUI.showToast(win, "没有可以重做的步骤", "提示", 2000);
+            return;
+        }
+        this.win.handleDirectionPressed(MoveHistory.direction(move));
+    }
 
-        NeonDialogUI.showToast(win, msg, "时间回溯", 2000);
+    /**
+     * 切换重做分支
+     * 在同一局面撤销后走出过不同的步骤时，依次选择下一次重做要走的分支
+     */
+    public void switchBranch() {
+        int branches = this.currentLevel.getHistory().nextBranch();
+        if (branches < 2) {
+            NeonDialogUI.showToast(win, "当前位置没有其他分支", "提示", 2000);
+            return;
+        }
+        int move = this.currentLevel.getHistory().peekRedo();
+        String msg = String.format("已切换分支（共 %d 个），重做方向：%s",
+                branches, "↑→↓←".charAt(MoveHistory.direction(move) - 1));
+        NeonDialogUI.showToast(win, msg, "分支", 2000);
     }
 
     /**
@@ -145,7 +149,8 @@ public class Game {
     public void selectLevel() {
         String levelString = NeonDialogUI.showInput(
                 win,
-                "请输入跳转关卡 (1-50)<br><span style='font-size:10px; color:#bc13fe'>警告：当前进度将丢失</span>",
+                levelProgressHtml() +
+                        "请输入跳转关卡 (1-50)<br><span style='font-size:10px; color:#bc13fe'>警告：当前进度将丢失</span>",
                 "JUMP TO"
         );
 
@@ -165,12 +170,109 @@ public class Game {
         }
     }
 
+    /**
+     * 生成各关进度的 HTML：已通关的关卡为蓝色，玩过的为粉色，没玩过的为灰色
+     * 进度从索引文件的关卡表中一次读出，不读取任何存档
+     * @return HTML 片段
+     */
+    private String levelProgressHtml() {
+        ProgressStore.LevelProgress[] progress = GameSave.getLevelProgress();
+        StringBuilder table = new StringBuilder("<table style='margin: 5px auto; font-size: 10px;'>");
+        int solved = 0;
+        for (int i = 0; i < progress.length; i++) {
+            if (progress[i].isSolved()) solved++;
+            String color = progress[i].isSolved() ? "#00f3ff" : progress[i].isPlayed() ? "#bc13fe" : "#555";
+            if (i % 10 == 0) table.append("<tr>");
+            table.append("<td style='color:").append(color).append("'>").append(i + 1).append("</td>");
+            if (i % 10 == 9) table.append("</tr>");
+        }
+        table.append("</table>");
+
+        String html = "已通关 " + solved + " / " + GameSave.LEVEL_COUNT + table;
+        int current = currentLevel.getLevel();
+        if (current <= progress.length && progress[current - 1].isSolved()) {
+            html += String.format("<span style='font-size:10px'>本关最佳：%d 步 / %d 次推动</span><br>",
+                    progress[current - 1].bestSteps, progress[current - 1].bestPushes);
+        }
+        return html;
+    }
+
+    /**
+     * 切换存档槽
+     * 列出各存档槽的摘要；选择的存档槽中有存档时读取它，否则把当前进度保存到该槽
+     */
+    public void selectSlot() {
+        StringBuilder slots = new StringBuilder();
+        for (int i = 0; i < GameSave.SLOT_COUNT; i++) {
+            ProgressStore.SlotInfo info = GameSave.getSlotInfo(i);
+            slots.append(i == GameSave.getSlot() ? "▶ " : "").append("存档槽 ").append(i + 1).append("：");
+            if (info == null) {
+                slots.append("<span style='color:#555'>空</span>");
+            } else {
+                slots.append(String.format("第 %d 关 · %d 步 · %d/%d",
+                        info.level, info.steps, info.boxesOnTarget, info.boxCount));
+            }
+            slots.append("<br>");
+        }
+
+        String slotString = NeonDialogUI.showInput(
+                win,
+                slots + "请输入存档槽编号 (1-" + GameSave.SLOT_COUNT + ")",
+                "SAVE SLOT"
+        );
+
+        if (slotString == null) return;
+
+        int slot;
+        try {
+            slot = Integer.parseInt(slotString.trim()) - 1;
+            if (slot < 0 || slot >= GameSave.SLOT_COUNT) throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            NeonDialogUI.showError(win, "无效的存档槽编号 (1-" + GameSave.SLOT_COUNT + ")");
+            selectSlot(); // 递归重试
+            return;
+        }
+        if (slot == GameSave.getSlot()) return;
+
+        GameSave.setSlot(slot);
+        if (GameSave.hasSave() && GameSave.loadGame(this)) {
+            NeonDialogUI.showToast(win, "已读取存档槽 " + (slot + 1), "SAVE SLOT", 2000);
+        } else {
+            GameSave.saveGame(this);
+            NeonDialogUI.showToast(win, "当前进度已保存到存档槽 " + (slot + 1), "SAVE SLOT", 2000);
+        }
+    }
+
+    /**
+     * 导入移动步骤
+     * 玩家输入 LURD 字符串（小写为行走，大写为推动，例如解法或录像），从当前关卡初始局面重放，
+     * 成功后替换当前关卡的进度并自动保存，之后可以像自己走出的步骤一样撤销和重做
+     */
+    public void importMoves() {
+        String moves = NeonDialogUI.showInput(
+                win,
+                "请输入第 " + currentLevel.getLevel() + " 关的移动步骤 (LURD)<br>" +
+                        "<span style='font-size:10px; color:#bc13fe'>小写为行走，大写为推动；当前进度将被替换</span>",
+                "IMPORT MOVES"
+        );
+
+        if (moves == null) return;
+
+        if (!GameSave.loadMoves(this, currentLevel.getLevel(), moves)) {
+            NeonDialogUI.showError(win, "移动步骤与当前关卡不符");
+            return;
+        }
+        GameSave.saveGame(this);
+        NeonDialogUI.showToast(win, "已导入 " + currentLevel.getStepCount() + " 步", "IMPORT MOVES", 2000);
+    }
+
     /**
      * 完成当前关卡
      * 显示过关提示，并自动进入下一关
      */
     public void passCurrentLevel() {
         this.win.repaint();
+        GameSave.levelCompleted(currentLevel);  // 记录通关和最好成绩
 
         NeonDialogUI.showMessage(
                 this.win,
@@ -1,36 +1,29 @@
 package com.sokoban.model;
 
 import java.awt.Graphics;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
 
 import com.sokoban.model.map.GameMap;
 import com.sokoban.model.map.GameMapCell;
+import com.sokoban.model.map.MapLayout;
 import com.sokoban.model.spirit.Box;
 import com.sokoban.model.spirit.Boy;
-import com.sokoban.util.R;
 
 /**
  * 游戏关卡类，实现了Direction接口，用于管理游戏关卡的状态和逻辑
  */
 public class GameLevel implements Direction {
-    // 关卡地图文件路径常量
-    private static final String LEVEL_MAP_PATH = "/asset/maps/%d.map";
-    // 游戏元素类型常量
-    private static final int BOY = 5, BOX = 3;
     private int level;  // 当前关卡编号
     private Box[] boxes;  // 箱子数组
     private Boy boy;  // 玩家角色
     private GameMap map;  // 游戏地图
+    private MapLayout layout;  // 地图布局（格子下标与相邻关系）
+    private BoardState state;  // 箱子占用位图，用于快速判定
+    private Box[] boxGrid;     // 按格子下标索引的箱子对象
+    private DeadlockDetector detector;  // 死锁检测器
+    private boolean deadlocked;         // 当前局面是否已经死锁
     final private Game game;  // 游戏主体
-    public LinkedList<GameMove> moveStack = new LinkedList<>();  // 移动历史记录栈
-    private int stepCount = 0;  // 记录步数
-    private int undoUsedCount = 0;  // 记录本关卡已回退的次数
+    private final MoveHistory history = new MoveHistory();  // 移动历史树，支持撤销、重做和分支
 
     /**
      * 构造方法，初始化游戏关卡
@@ -40,8 +33,6 @@ public class GameLevel implements Direction {
     public GameLevel(Game game, int level) {
         this.game = game;
         this.setLevel(level);
-        moveStack.add(null);  // 初始化移动栈，添加null作为初始状态
-        this.stepCount = 0; // 初始化
     }
 
     /**
@@ -49,22 +40,12 @@ public class GameLevel implements Direction {
      */
     public void reload() {
         this.setLevel(this.level);
-        this.stepCount = 0; // 重置步数
-        this.undoUsedCount = 0;
+        this.history.clear();
     }
 
-    // 获取和增加回退次数的方法
-    public int getUndoUsedCount() {
-        return undoUsedCount;
-    }
-
-    public void incrementUndoUsedCount() {
-        this.undoUsedCount++;
-    }
-
-    // 获取步数的方法
+    // 获取步数的方法，即从初始局面到当前局面走过的步数
     public int getStepCount() {
-        return stepCount;
+        return history.size();
     }
 
     /**
@@ -95,22 +76,29 @@ public class GameLevel implements Direction {
                 break;
         }
 
-        // 检查是否所有箱子都到达目标位置
-        int totalBox = boxes.length;
-        for (Box box : boxes) {
-            GameMapCell TARGETCell = map.get(box.x, box.y);
-            if (TARGETCell.type == GameMapCell.TYPE_TARGET) {
-                box.setWin();
-                totalBox--;
-            }
-        }
-
-        // 如果所有箱子都到达目标位置，通过当前关卡
-        if (totalBox == 0) {
+        // 如果所有箱子都到达目标位置（增量计数判定），通过当前关卡
+        // 箱子的显示状态已在推动时更新
+        if (state.isSolved()) {
             game.passCurrentLevel();
         }
     }
 
+    /**
+     * 获取位于目标点上的箱子数量，随箱子移动增量维护
+     * @return 箱子数量
+     */
+    public int getBoxesOnTarget() {
+        return state.getBoxesOnTarget();
+    }
+
+    /**
+     * 获取箱子总数
+     * @return 箱子数量
+     */
+    public int getBoxCount() {
+        return state.getBoxCount();
+    }
+
     /**
      * 获取指定位置的箱子
      * @param x x坐标
@@ -118,48 +106,180 @@ public class GameLevel implements Direction {
      * @return 该位置的箱子，如果没有则返回null
      */
     private Box getBoxAt(int x, int y) {
+        int index = layout.index(x, y);
+        return state.hasBox(index) ? boxGrid[index] : null;
+    }
+
+    /**
+     * 推动箱子一格，同时更新箱子位图和格子索引
+     * @param box 被推动的箱子
+     * @param direction 推动方向
+     */
+    private void pushBox(Box box, int direction) {
+        int from = layout.index(box.x, box.y);
+        switch (direction) {
+            case UP:
+                box.moveUp();
+                break;
+            case RIGHT:
+                box.moveRight();
+                break;
+            case DOWN:
+                box.moveDown();
+                break;
+            case LEFT:
+                box.moveLeft();
+                break;
+        }
+        int to = layout.index(box.x, box.y);
+        state.moveBox(from, to);
+        boxGrid[from] = null;
+        boxGrid[to] = box;
+        updateBoxStatus(box, to);
+        // 只有推动的箱子可能新造成死锁
+        deadlocked = deadlocked || detector.isDeadlockAfterPush(state, to);
+    }
+
+    /**
+     * 把箱子放到指定位置，同时更新箱子位图和格子索引
+     * 撤销和读档恢复箱子位置时必须通过此方法，不能直接调用 Box.moveTo
+     * @param box 箱子
+     * @param x 新的x坐标
+     * @param y 新的y坐标
+     */
+    public void moveBoxTo(Box box, int x, int y) {
+        int from = layout.index(box.x, box.y);
+        int to = layout.index(x, y);
+        if (boxGrid[from] == box) {
+            state.removeBox(from);
+            boxGrid[from] = null;
+        }
+        box.moveTo(x, y);
+        state.addBox(to);
+        boxGrid[to] = box;
+        updateBoxStatus(box, to);
+        deadlocked = detector.isDeadlocked(state);
+    }
+
+    /**
+     * 根据箱子所在格子是否为目标点更新箱子的显示状态
+     * @param box 箱子
+     * @param index 箱子所在格子下标
+     */
+    private void updateBoxStatus(Box box, int index) {
+        if (layout.isTarget(index)) {
+            box.setWin();
+        } else {
+            box.setNomal();
+        }
+    }
+
+    /**
+     * 判断当前局面是否已经死锁（有箱子被卡死且不在目标点上），此时本关已无法完成
+     * @return 是否死锁
+     */
+    public boolean isDeadlocked() {
+        return deadlocked;
+    }
+
+    /**
+     * 获取当前局面的紧凑状态，男孩位置同步为当前坐标
+     * 返回的对象随游戏进行而变化，需要保留时请复制
+     * @return 局面状态
+     */
+    public BoardState getState() {
+        state.setPlayer(layout.index(boy.x, boy.y));
+        return state;
+    }
+
+    /**
+     * 根据箱子数组重建箱子位图和格子索引
+     */
+    private void rebuildState() {
+        if (map == null || boxes == null) return;
+        MapLayout previous = this.layout;
+        this.layout = map.getLayout();
+        this.state = new BoardState(layout);
+        this.boxGrid = new Box[layout.size];
         for (Box box : boxes) {
-            if (box.x == x && box.y == y) {
-                return box;
-            }
+            int index = layout.index(box.x, box.y);
+            state.addBox(index);
+            boxGrid[index] = box;
+            updateBoxStatus(box, index);
+        }
+        if (detector == null || previous != layout) {  // 重玩同一关时布局相同，检测器可以复用
+            this.detector = new DeadlockDetector(layout);
         }
-        return null;
+        this.deadlocked = detector.isDeadlocked(state);
     }
 
     /**
      * 撤销上一步操作
+     * 男孩从当前位置沿移动方向反向退回一格；如果上一步推了箱子，箱子从男孩前方一格拉回男孩原来的位置
      */
     public void previousMove() {
-        if (moveStack.isEmpty()) return;
+        if (history.isEmpty()) return;
 
-        // 获取最后一步
-        GameMove previous = moveStack.pollLast();
+        int move = history.pop();
+        int direction = MoveHistory.direction(move);
+        int dx = direction == RIGHT ? 1 : direction == LEFT ? -1 : 0;
+        int dy = direction == DOWN ? 1 : direction == UP ? -1 : 0;
+        int x = boy.x, y = boy.y;
 
-        // 如果是初始的 null (栈底)，说明已经没有步数了，把 null 放回去保持栈结构（或者由调用者判断）
-        if (previous == null) {
-            // 如果外部逻辑判断了 stack.size > 1，这里可能不会执行到
-            // 但为了安全，如果 pop 出来是 null，最好重置一下或忽略
-            this.stepCount = 0;
-            return;
+        // 如果移动了箱子，恢复箱子的位置
+        if (MoveHistory.isPush(move)) {
+            Box box = getBoxAt(x + dx, y + dy);
+            if (box != null) moveBoxTo(box, x, y);
         }
 
         // 恢复男孩的位置和方向
-        boy.reset(previous.boyX, previous.boyY, previous.boyDirection);
+        boy.reset(x - dx, y - dy, MoveHistory.facing(move));
+    }
 
-        // 如果移动了箱子，恢复箱子的位置
-        if (previous.moveBox != null) {
-            Box b = previous.moveBox;
-            b.moveTo(previous.boxX, previous.boxY);
-            GameMapCell TARGETCell = map.get(b.x, b.y);
-            if (TARGETCell.type == GameMapCell.TYPE_TARGET) {
-                b.setWin();
-            } else {
-                b.setNomal(); // 离开目标点恢复普通状态
-            }
+    /**
+     * 把男孩和箱子放到指定局面，移动历史不变，用于读档
+     * 箱子可以互换，箱子对象按格子下标顺序重新分配位置后整体重建位图和格子索引，
+     * 之后的撤销和推动都作用在这些箱子对象上
+     * @param target 目标局面，布局与本关相同
+     * @param facing 男孩朝向
+     */
+    public void restore(BoardState target, int facing) {
+        int index = target.nextBox(0);
+        for (Box box : boxes) {
+            if (index < 0) break;
+            box.moveTo(layout.x(index), layout.y(index));
+            index = target.nextBox(index + 1);
         }
+        int player = target.getPlayer();
+        boy.reset(layout.x(player), layout.y(player), facing);
+        rebuildState();
+    }
 
-        // 步数减一
-        if (stepCount > 0) stepCount--;
+    /**
+     * 按移动编码走一步并记入历史，用于读档时重放存档中的移动
+     * 与方向键不同，不检查是否过关；调用方保证这一步在当前局面下可以执行
+     * @param move 移动编码
+     */
+    public void applyMove(int move) {
+        int direction = MoveHistory.direction(move);
+        int dx = direction == RIGHT ? 1 : direction == LEFT ? -1 : 0;
+        int dy = direction == DOWN ? 1 : direction == UP ? -1 : 0;
+        int x = boy.x, y = boy.y;
+
+        history.push(move);
+        if (MoveHistory.isPush(move)) {
+            Box box = getBoxAt(x + dx, y + dy);
+            if (box != null) pushBox(box, direction);
+        }
+        boy.reset(x + dx, y + dy, direction);
+    }
+
+    /**
+     * 获取移动历史
+     * @return 移动历史树
+     */
+    public MoveHistory getHistory() {
+        return history;
     }
 
     /**
@@ -169,15 +289,9 @@ public class GameLevel implements Direction {
      * @return 是否可以移动
      */
     private boolean canBoxMoveIn(int x, int y) {
-        GameMapCell cell = map.get(x, y);
-        if (cell != null) {
-            switch (cell.type) {
-                case GameMapCell.TYPE_WAY:
-                case GameMapCell.TYPE_TARGET:
-                    return getBoxAt(x, y) == null;
-            }
-        }
-        return false;
+        if (x < 0 || x >= layout.width || y < 0 || y >= layout.height) return false;
+        int index = layout.index(x, y);
+        return layout.isFloor(index) && !state.hasBox(index);
     }
 
     /**
@@ -195,15 +309,13 @@ public class GameLevel implements Direction {
             case GameMapCell.TYPE_TARGET:
                 Box box = getBoxAt(cell.x, cell.y);
                 if (box == null) {
-                    moveStack.add(GameMove.of(boy));
+                    history.push(MoveHistory.encode(UP, false, boy.currentDirection));
                     boy.moveUp();
-                    stepCount++;
                 } else {
                     if (canBoxMoveIn(box.x, box.y - 1)) {
-                        moveStack.add(GameMove.of(boy, box));
-                        box.moveUp();
+                        history.push(MoveHistory.encode(UP, true, boy.currentDirection));
+                        pushBox(box, UP);
                         boy.moveUp();
-                        stepCount++;
                     }
                 }
                 break;
@@ -226,15 +338,13 @@ public class GameLevel implements Direction {
                 Box box = getBoxAt(cell.x, cell.y);
                 if (box == null) {
                     // 修复点：先保存，再移动
-                    moveStack.add(GameMove.of(boy));
+                    history.push(MoveHistory.encode(RIGHT, false, boy.currentDirection));
                     boy.moveRight();
-                    stepCount++;
                 } else {
                     if (canBoxMoveIn(box.x + 1, box.y)) {
-                        moveStack.add(GameMove.of(boy, box));
-                        box.moveRight();
+                        history.push(MoveHistory.encode(RIGHT, true, boy.currentDirection));
+                        pushBox(box, RIGHT);
                         boy.moveRight();
-                        stepCount++;
                     }
                 }
                 break;
@@ -257,15 +367,13 @@ public class GameLevel implements Direction {
                 Box box = getBoxAt(cell.x, cell.y);
                 if (box == null) {
                     // 修复点：先保存，再移动
-                    moveStack.add(GameMove.of(boy));
+                    history.push(MoveHistory.encode(DOWN, false, boy.currentDirection));
                     boy.moveDown();
-                    stepCount++;
                 } else {
                     if (canBoxMoveIn(box.x, box.y + 1)) {
-                        moveStack.add(GameMove.of(boy, box));
-                        box.moveDown();
+                        history.push(MoveHistory.encode(DOWN, true, boy.currentDirection));
+                        pushBox(box, DOWN);
                         boy.moveDown();
-                        stepCount++;
                     }
                 }
                 break;
@@ -288,15 +396,13 @@ public class GameLevel implements Direction {
                 Box box = getBoxAt(cell.x, cell.y);
                 if (box == null) {
                     // 修复点：先保存，再移动
-                    moveStack.add(GameMove.of(boy));
+                    history.push(MoveHistory.encode(LEFT, false, boy.currentDirection));
                     boy.moveLeft();
-                    stepCount++;
                 } else {
                     if (canBoxMoveIn(box.x - 1, box.y)) {
-                        moveStack.add(GameMove.of(boy, box));
-                        box.moveLeft();
+                        history.push(MoveHistory.encode(LEFT, true, boy.currentDirection));
+                        pushBox(box, LEFT);
                         boy.moveLeft();
-                        stepCount++;
                     }
                 }
                 break;
@@ -317,35 +423,22 @@ public class GameLevel implements Direction {
     }
 
     /**
-     * 加载关卡数据
+     * 加载关卡数据，地图和布局与关卡模板共享，只新建男孩和箱子
      * @param level 关卡编号
      * @throws IOException 文件读取异常
      */
     private void loadLevelData(int level) throws IOException {
-        GameMap map = this.map = new GameMap();
-        List<Box> boxes = new ArrayList<>();
-        try (InputStream is = R.getResourceAsStream(String.format(LEVEL_MAP_PATH, level));
-             BufferedReader br = new BufferedReader(new InputStreamReader(is));) {
-            String line;
-            int y = 0;
-            int c;
-            while ((line = br.readLine()) != null) {
-                for (int x = line.length(); x-- > 0;) {
-                    c = line.charAt(x) - '0';
-                    if (c == BOY) {
-                        boy = new Boy(x, y);
-                        c = GameMapCell.TYPE_WAY;
-                    } else if (c == BOX) {
-                        boxes.add(new Box(x, y));
-                        c = GameMapCell.TYPE_WAY;
-                    }
-                    GameMapCell cell = new GameMapCell(x, y, c);
-                    map.add(cell);
-                }
-                y++;
-            }
+        LevelData data = LevelData.get(level);
+        this.map = data.map;
+        if (data.boyX >= 0) {
+            this.boy = new Boy(data.boyX, data.boyY);
         }
-        this.boxes = boxes.toArray(new Box[boxes.size()]);
+        Box[] boxes = new Box[data.getBoxCount()];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = new Box(data.getBoxX(i), data.getBoxY(i));
+        }
+        this.boxes = boxes;
+        rebuildState();
     }
 
     /**
@@ -362,6 +455,7 @@ public class GameLevel implements Direction {
      */
     public void setBox(Box[] boxes) {
         this.boxes = boxes;
+        rebuildState();
     }
 
     /**
@@ -394,6 +488,7 @@ public class GameLevel implements Direction {
      */
     public void setMap(GameMap map) {
         this.map = map;
+        rebuildState();
     }
 
     /**
@@ -0,0 +1,273 @@
+package com.sokoban.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.sokoban.model.map.GameMap;
+import com.sokoban.model.map.MapLayout;
+import com.sokoban.model.map.GameMapCell;
+import com.sokoban.util.R;
+
+/**
+ * 关卡数据类，保存从地图文件解析出的静态地图、男孩初始位置和箱子初始位置
+ * 不依赖任何 Swing 对象，游戏关卡和无界面求解器共用同一套解析逻辑。
+ * 关卡数据创建后不再修改，可以作为模板在多个关卡实例和线程之间共享：
+ * get 按关卡编号缓存最近使用的关卡，进入关卡、重玩、选关和读档都不再读文件和解析
+ */
+public class LevelData {
+    // 关卡地图文件路径常量
+    public static final String LEVEL_MAP_PATH = "/asset/maps/%d.map";
+    // 游戏元素类型常量
+    private static final byte BOY = 5, BOX = 3, BOX_ON_TARGET = 6, BOY_ON_TARGET = 7;
+    // 没有格子的位置（地图文件中较短的行）
+    public static final byte NO_CELL = 15;
+    // 缓存的关卡数上限
+    private static final int CACHE_SIZE = 16;
+    private static final Map<Integer, LevelData> CACHE = new LinkedHashMap<Integer, LevelData>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, LevelData> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static LevelPack pack;        // 随程序发布的关卡包
+    private static boolean packLoaded;    // 是否已尝试加载关卡包
+
+    public final int level;      // 关卡编号
+    public final GameMap map;    // 静态地图（箱子和男孩所在格子记为通道）
+    public final int boyX, boyY; // 男孩初始坐标
+    private final int[] boxX;    // 箱子初始x坐标，顺序与地图扫描顺序一致
+    private final int[] boxY;    // 箱子初始y坐标
+
+    private LevelData(int level, GameMap map, int boyX, int boyY, int[] boxX, int[] boxY) {
+        this.level = level;
+        this.map = map;
+        this.boyX = boyX;
+        this.boyY = boyY;
+        this.boxX = boxX;
+        this.boxY = boxY;
+    }
+
+    /**
+     * 获取箱子数量
+     * @return 箱子数量
+     */
+    public int getBoxCount() {
+        return boxX.length;
+    }
+
+    /**
+     * 获取第 i 个箱子的初始x坐标
+     * @param i 箱子序号
+     * @return x坐标
+     */
+    public int getBoxX(int i) {
+        return boxX[i];
+    }
+
+    /**
+     * 获取第 i 个箱子的初始y坐标
+     * @param i 箱子序号
+     * @return y坐标
+     */
+    public int getBoxY(int i) {
+        return boxY[i];
+    }
+
+    /**
+     * 创建初始局面，每次调用返回新的对象，可以自由修改
+     * @return 初始局面，地图中没有男孩时男孩位置为 -1
+     */
+    public BoardState newState() {
+        MapLayout layout = map.getLayout();
+        BoardState state = new BoardState(layout);
+        for (int i = 0; i < boxX.length; i++) {
+            state.addBox(layout.index(boxX[i], boxY[i]));
+        }
+        state.setPlayer(boyX >= 0 ? layout.index(boyX, boyY) : -1);
+        return state;
+    }
+
+    /**
+     * 获取指定关卡，优先使用缓存，缓存中没有时从关卡包或地图文件加载并放入缓存
+     * 类路径下同时有该关卡的地图文件时，先核对地图文件的 CRC32 与关卡包中记录的是否一致，
+     * 不一致说明地图修改后没有重新运行 LevelPackBuilder，直接报错而不是悄悄使用旧关卡
+     * @param level 关卡编号
+     * @return 关卡数据，与其他调用方共享，不可修改
+     * @throws IOException 文件读取异常或关卡包已过期
+     */
+    public static LevelData get(int level) throws IOException {
+        synchronized (CACHE) {
+            LevelData data = CACHE.get(level);
+            if (data != null) return data;
+        }
+        LevelPack pack = bundledPack();
+        LevelData data;
+        if (pack != null && pack.contains(level)) {
+            long checksum = mapChecksum(level);
+            if (checksum >= 0 && (int) checksum != pack.checksum(level)) {
+                throw new IOException("关卡包已过期，地图文件 " + String.format(LEVEL_MAP_PATH, level)
+                        + " 已修改，请运行 LevelPackBuilder 重新生成 " + LevelPack.RESOURCE);
+            }
+            data = pack.get(level);
+        } else {
+            data = load(level);
+        }
+        data.map.getLayout();  // 预先构建布局，之后的实例直接复用
+        synchronized (CACHE) {
+            LevelData cached = CACHE.putIfAbsent(level, data);
+            return cached != null ? cached : data;
+        }
+    }
+
+    /**
+     * 随程序发布的关卡包，首次使用时加载；没有关卡包或读取失败时返回 null，改为读地图文件
+     */
+    private static LevelPack bundledPack() {
+        synchronized (CACHE) {
+            if (!packLoaded) {
+                packLoaded = true;
+                try {
+                    pack = LevelPack.fromResource(LevelPack.RESOURCE);
+                } catch (IOException e) {
+                    System.err.println("关卡包读取失败: " + e.getMessage());
+                }
+            }
+            return pack;
+        }
+    }
+
+    /**
+     * 计算类路径下关卡地图文件的 CRC32，只读字节不解析
+     * @param level 关卡编号
+     * @return CRC32，地图文件不存在时返回 -1
+     * @throws IOException 文件读取异常
+     */
+    static long mapChecksum(int level) throws IOException {
+        InputStream is = R.getResourceAsStream(String.format(LEVEL_MAP_PATH, level));
+        if (is == null) return -1;
+        try (InputStream in = is) {
+            CRC32 crc = new CRC32();
+            crc.update(in.readAllBytes());
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * 从类路径加载指定关卡，每次调用都重新读取和解析，不使用缓存
+     * @param level 关卡编号
+     * @return 关卡数据
+     * @throws IOException 文件读取异常
+     */
+    public static LevelData load(int level) throws IOException {
+        InputStream is = R.getResourceAsStream(String.format(LEVEL_MAP_PATH, level));
+        if (is == null) {
+            throw new IOException("关卡文件不存在: " + String.format(LEVEL_MAP_PATH, level));
+        }
+        return parse(level, is);
+    }
+
+    /**
+     * 解析地图文件流，解析完成后关闭流
+     * @param level 关卡编号
+     * @param in 地图文件输入流
+     * @return 关卡数据
+     * @throws IOException 文件读取异常
+     */
+    public static LevelData parse(int level, InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream is = in;
+             BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, line.length());
+        }
+        byte[] codes = new byte[width * lines.size()];
+        Arrays.fill(codes, NO_CELL);
+        for (int y = 0; y < lines.size(); y++) {
+            String line = lines.get(y);
+            for (int x = 0; x < line.length(); x++) {
+                codes[y * width + x] = (byte) (line.charAt(x) - '0');
+            }
+        }
+        return fromCodes(level, codes, width, lines.size());
+    }
+
+    /**
+     * 根据地图编码创建关卡数据，文本地图和二进制关卡包共用
+     * 编码与地图文件相同：0 空白、1 墙、2 通道、3 箱子、4 目标点、5 男孩，
+     * 另有 6 目标点上的箱子、7 目标点上的男孩（XSB 导入的关卡会用到），NO_CELL 表示没有格子；
+     * 其他编码（内置地图中的 9）作为既不能行走也不绘制的格子保留
+     * @param level 关卡编号
+     * @param codes 按行存放的格子编码，下标为 y * width + x
+     * @param width 列数
+     * @param height 行数
+     * @return 关卡数据
+     */
+    public static LevelData fromCodes(int level, byte[] codes, int width, int height) {
+        GameMap map = new GameMap(width, height);
+        List<int[]> boxes = new ArrayList<>();
+        int boyX = -1, boyY = -1;
+        for (int y = 0; y < height; y++) {
+            // 每行从右向左扫描，箱子顺序与旧版存档中的箱子下标一致
+            for (int x = width; x-- > 0;) {
+                int c = codes[y * width + x];
+                if (c == NO_CELL) continue;
+                if (c == BOY || c == BOY_ON_TARGET) {
+                    boyX = x;
+                    boyY = y;
+                    c = c == BOY ? GameMapCell.TYPE_WAY : GameMapCell.TYPE_TARGET;
+                } else if (c == BOX || c == BOX_ON_TARGET) {
+                    boxes.add(new int[]{x, y});
+                    c = c == BOX ? GameMapCell.TYPE_WAY : GameMapCell.TYPE_TARGET;
+                }
+                GameMapCell cell = new GameMapCell(x, y, c);
+                map.add(cell);
+            }
+        }
+        int[] boxX = new int[boxes.size()];
+        int[] boxY = new int[boxes.size()];
+        for (int i = 0; i < boxX.length; i++) {
+            boxX[i] = boxes.get(i)[0];
+            boxY[i] = boxes.get(i)[1];
+        }
+        return new LevelData(level, map, boyX, boyY, boxX, boxY);
+    }
+
+    /**
+     * 把关卡还原为地图编码，箱子和男孩所在格子分别记为 3 和 5，位于目标点上时记为 6 和 7
+     * @return 按行存放的格子编码，大小为地图行数乘列数
+     */
+    public byte[] toCodes() {
+        int width = map.getCols(), height = map.getRows();
+        byte[] codes = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                GameMapCell cell = map.get(x, y);
+                codes[y * width + x] = cell == null ? NO_CELL : (byte) cell.type;
+            }
+        }
+        for (int i = 0; i < boxX.length; i++) {
+            int c = boxY[i] * width + boxX[i];
+            codes[c] = codes[c] == GameMapCell.TYPE_TARGET ? BOX_ON_TARGET : BOX;
+        }
+        if (boyX >= 0) {
+            int c = boyY * width + boyX;
+            codes[c] = codes[c] == GameMapCell.TYPE_TARGET ? BOY_ON_TARGET : BOY;
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,211 @@
+package com.sokoban.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.sokoban.util.R;
+
+/**
+ * 二进制关卡包，把多个关卡放在一个文件中
+ * 格式（大端序）：
+ *   文件头 24 字节：魔数 "SKPK"、版本、关卡数、列数、行数、每关字节数
+ *   索引：每关一个 int 关卡编号和一个 int 源地图文件的 CRC32，按编号升序
+ *   数据：每关一个定长记录，每个格子 4 位（偶数格在低 4 位），编码与地图文件相同
+ * 所有关卡尺寸相同，第 i 关的记录位置可以直接算出，查找关卡只需在索引上二分，不需要解析文本。
+ * 磁盘上的文件通过 FileChannel.map 映射，jar 内的资源一次读入内存。
+ * 索引中的 CRC32 用来发现地图文件修改后没有重新生成的关卡包（见 LevelData.get）
+ */
+public final class LevelPack {
+    /**
+     * 随程序发布的关卡包资源路径，由 LevelPackBuilder 从 /asset/maps 生成
+     */
+    public static final String RESOURCE = "/asset/levels.pack";
+
+    private static final int MAGIC = 0x534B504B;  // "SKPK"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 24;
+    private static final int INDEX_BYTES = 8;  // 每关的索引字节数
+
+    private final ByteBuffer buffer;
+    private final int count;        // 关卡数
+    private final int width;        // 列数
+    private final int height;       // 行数
+    private final int recordBytes;  // 每关字节数
+    private final int dataStart;    // 第一个记录的位置
+
+    private LevelPack(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是关卡包文件");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("不支持的关卡包版本: " + buffer.getInt(4));
+        }
+        this.count = buffer.getInt(8);
+        this.width = buffer.getInt(12);
+        this.height = buffer.getInt(16);
+        this.recordBytes = buffer.getInt(20);
+        this.dataStart = HEADER_BYTES + count * INDEX_BYTES;
+        if (recordBytes != (width * height + 1) / 2
+                || (long) dataStart + (long) count * recordBytes > buffer.capacity()) {
+            throw new IOException("关卡包文件已损坏");
+        }
+    }
+
+    /**
+     * 映射磁盘上的关卡包文件
+     * @param path 文件路径
+     * @return 关卡包
+     * @throws IOException 文件读取异常或格式错误
+     */
+    public static LevelPack open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new LevelPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 从类路径加载关卡包：资源位于目录中时直接映射文件，位于 jar 中时一次读入
+     * @param resource 资源路径
+     * @return 关卡包，资源不存在时返回 null
+     * @throws IOException 文件读取异常或格式错误
+     */
+    public static LevelPack fromResource(String resource) throws IOException {
+        URL url = R.class.getResource(resource);
+        if (url == null) return null;
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return open(Paths.get(url.toURI()));
+            } catch (URISyntaxException e) {
+                // 路径无法转换时按普通资源读取
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            return new LevelPack(ByteBuffer.wrap(in.readAllBytes()));
+        }
+    }
+
+    /**
+     * 包中的关卡数
+     * @return 关卡数
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 包中第 i 个关卡的编号
+     * @param i 序号，从 0 开始
+     * @return 关卡编号
+     */
+    public int levelAt(int i) {
+        return buffer.getInt(HEADER_BYTES + i * INDEX_BYTES);
+    }
+
+    /**
+     * 生成关卡包时指定关卡源地图文件的 CRC32
+     * @param level 关卡编号，必须存在于包中
+     * @return CRC32 的低 32 位
+     */
+    public int checksum(int level) {
+        return buffer.getInt(HEADER_BYTES + indexOf(level) * INDEX_BYTES + 4);
+    }
+
+    /**
+     * 判断包中是否有指定关卡
+     * @param level 关卡编号
+     * @return 是否存在
+     */
+    public boolean contains(int level) {
+        return indexOf(level) >= 0;
+    }
+
+    /**
+     * 直接读取某个格子的编码，不创建关卡对象
+     * @param level 关卡编号，必须存在于包中
+     * @param x x坐标
+     * @param y y坐标
+     * @return 格子编码
+     */
+    public int cell(int level, int x, int y) {
+        return code(dataStart + indexOf(level) * recordBytes, y * width + x);
+    }
+
+    /**
+     * 读取指定关卡
+     * @param level 关卡编号
+     * @return 关卡数据，包中没有该关卡时返回 null
+     */
+    public LevelData get(int level) {
+        int i = indexOf(level);
+        if (i < 0) return null;
+        int offset = dataStart + i * recordBytes;
+        byte[] codes = new byte[width * height];
+        for (int c = 0; c < codes.length; c++) {
+            codes[c] = (byte) code(offset, c);
+        }
+        return LevelData.fromCodes(level, codes, width, height);
+    }
+
+    private int code(int offset, int cell) {
+        int b = buffer.get(offset + (cell >>> 1));
+        return (cell & 1) == 0 ? b & 0x0F : (b >>> 4) & 0x0F;
+    }
+
+    private int indexOf(int level) {
+        int lo = 0, hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int l = levelAt(mid);
+            if (l < level) lo = mid + 1;
+            else if (l > level) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * 把关卡写成关卡包文件
+     * @param path 输出文件
+     * @param levels 关卡列表，按关卡编号升序且尺寸相同
+     * @param checksums 每个关卡源地图文件的 CRC32，顺序与 levels 相同
+     * @throws IOException 文件写入异常
+     */
+    public static void write(Path path, List<LevelData> levels, int[] checksums) throws IOException {
+        int width = levels.isEmpty() ? 0 : levels.get(0).map.getCols();
+        int height = levels.isEmpty() ? 0 : levels.get(0).map.getRows();
+        int recordBytes = (width * height + 1) / 2;
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + levels.size() * (INDEX_BYTES + recordBytes));
+        out.putInt(MAGIC).putInt(VERSION).putInt(levels.size())
+                .putInt(width).putInt(height).putInt(recordBytes);
+        int previous = Integer.MIN_VALUE;
+        for (int i = 0; i < levels.size(); i++) {
+            LevelData data = levels.get(i);
+            if (data.level <= previous) throw new IllegalArgumentException("关卡编号必须升序且不重复");
+            if (data.map.getCols() != width || data.map.getRows() != height) {
+                throw new IllegalArgumentException("关卡尺寸不一致: " + data.level);
+            }
+            previous = data.level;
+            out.putInt(data.level).putInt(checksums[i]);
+        }
+        for (LevelData data : levels) {
+            byte[] codes = data.toCodes();
+            for (int c = 0; c < recordBytes * 2; c += 2) {
+                int low = codes[c] & 0x0F;
+                int high = c + 1 < codes.length ? codes[c + 1] & 0x0F : 0;
+                out.put((byte) (low | high << 4));
+            }
+        }
+        Files.write(path, out.array());
+    }
+}
@@ -0,0 +1,38 @@
+package com.sokoban.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 关卡包生成工具，把类路径下的 /asset/maps/N.map 打包成一个二进制关卡包
+ * 修改地图文件后需要重新生成 src/main/resources/asset/levels.pack，否则 LevelData.get 会报告关卡包已过期
+ * 用法：LevelPackBuilder [输出文件] [起始关卡] [结束关卡]
+ */
+public class LevelPackBuilder {
+    public static void main(String[] args) throws IOException {
+        Path out = Paths.get(args.length > 0 ? args[0] : "src/main/resources" + LevelPack.RESOURCE);
+        int from = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int to = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        List<LevelData> levels = new ArrayList<>();
+        int[] checksums = new int[to - from + 1];
+        for (int level = from; level <= to; level++) {
+            levels.add(LevelData.load(level));
+            checksums[level - from] = (int) LevelData.mapChecksum(level);
+        }
+        LevelPack.write(out, levels, checksums);
+
+        // 读回校验
+        LevelPack pack = LevelPack.open(out);
+        for (LevelData data : levels) {
+            if (!Arrays.equals(data.toCodes(), pack.get(data.level).toCodes())) {
+                throw new IOException("关卡 " + data.level + " 校验失败");
+            }
+        }
+        System.out.printf("已写入 %d 个关卡到 %s%n", pack.size(), out.toAbsolutePath());
+    }
+}
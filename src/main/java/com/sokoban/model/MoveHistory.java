@@ -0,0 +1,253 @@
+package com.sokoban.model;
+
+import java.util.Arrays;
+
+/**
+ * 移动历史树，支持任意步数的撤销、重做以及在分支之间切换
+ * 每一步是树中的一个节点，根节点表示关卡初始局面，当前局面对应 current 节点。
+ * 撤销时回到父节点，撤销过的节点保留在树中；在撤销后走出不同的一步会新建一个兄弟分支。
+ * 每个节点的子节点组成链表，链表头是“重做”时走的分支，最近走过的分支总是移到链表头，
+ * 因此撤销、重做、切换分支每一步都是常数时间（一个节点至多 4 个子节点）。
+ *
+ * 节点保存在可增长的基本类型数组中，每步约 13 字节，不分配对象。移动编码：
+ * 第 0-1 位为移动方向减一，第 2 位表示是否推动了箱子，第 3-4 位为移动前男孩朝向减一。
+ * 男孩移动前的位置由当前位置反推，被推动的箱子位于男孩移动后的前方一格，
+ * 因此撤销、重放和存档都不需要保存坐标或引用箱子对象
+ */
+public final class MoveHistory implements Direction {
+    /**
+     * diff 结果中表示撤销一步的编码
+     */
+    public static final int UNDO = -1;
+
+    private static final int PUSH = 1 << 2;
+    private static final int ROOT = 0;
+
+    private int[] parent = new int[64];
+    private int[] firstChild = new int[64];   // 重做时走的子节点，-1 表示没有
+    private int[] nextSibling = new int[64];
+    private byte[] moves = new byte[64];      // 到达该节点的移动编码
+    private int count;                        // 节点总数（含根节点）
+    private int current;                      // 当前局面对应的节点
+    private int depth;                        // 当前节点的深度，即从初始局面走过的步数
+    private int generation;                   // 清空次数，节点编号只在同一代内有效
+
+    public MoveHistory() {
+        clear();
+    }
+
+    /**
+     * 编码一步移动
+     * @param direction 移动方向
+     * @param push 是否推动了箱子
+     * @param facing 移动前男孩的朝向
+     * @return 移动编码
+     */
+    public static int encode(int direction, boolean push, int facing) {
+        return (direction - 1) | (push ? PUSH : 0) | ((facing - 1) & 3) << 3;
+    }
+
+    /**
+     * @param move 移动编码
+     * @return 移动方向
+     */
+    public static int direction(int move) {
+        return (move & 3) + 1;
+    }
+
+    /**
+     * @param move 移动编码
+     * @return 是否推动了箱子
+     */
+    public static boolean isPush(int move) {
+        return (move & PUSH) != 0;
+    }
+
+    /**
+     * @param move 移动编码
+     * @return 移动前男孩的朝向
+     */
+    public static int facing(int move) {
+        return ((move >>> 3) & 3) + 1;
+    }
+
+    /**
+     * 记录一步移动，当前节点前进到对应的子节点
+     * 如果这一步与已有的某个分支相同（例如重做），直接沿该分支前进，不新建节点
+     * @param move 移动编码
+     */
+    public void push(int move) {
+        int prev = -1;
+        for (int c = firstChild[current]; c >= 0; prev = c, c = nextSibling[c]) {
+            if (moves[c] == move) {
+                if (prev >= 0) {
+                    // 移到链表头，下次重做走这个分支
+                    nextSibling[prev] = nextSibling[c];
+                    nextSibling[c] = firstChild[current];
+                    firstChild[current] = c;
+                }
+                current = c;
+                depth++;
+                return;
+            }
+        }
+        if (count == parent.length) grow();
+        int node = count++;
+        parent[node] = current;
+        firstChild[node] = -1;
+        nextSibling[node] = firstChild[current];
+        moves[node] = (byte) move;
+        firstChild[current] = node;
+        current = node;
+        depth++;
+    }
+
+    /**
+     * 撤销一步，当前节点回到父节点，撤销的分支保留为重做分支
+     * 调用方保证历史非空
+     * @return 被撤销的移动编码
+     */
+    public int pop() {
+        int move = moves[current];
+        current = parent[current];
+        depth--;
+        return move;
+    }
+
+    /**
+     * 获取重做将要执行的移动编码
+     * @return 移动编码，没有可重做的步骤时返回 -1
+     */
+    public int peekRedo() {
+        int c = firstChild[current];
+        return c < 0 ? -1 : moves[c];
+    }
+
+    /**
+     * 把当前节点的下一个分支设为重做分支，原来的重做分支移到链表尾部
+     * @return 当前节点的分支数
+     */
+    public int nextBranch() {
+        int head = firstChild[current];
+        if (head < 0 || nextSibling[head] < 0) return head < 0 ? 0 : 1;
+        int branches = 1;
+        int tail = head;
+        while (nextSibling[tail] >= 0) {
+            tail = nextSibling[tail];
+            branches++;
+        }
+        firstChild[current] = nextSibling[head];
+        nextSibling[tail] = head;
+        nextSibling[head] = -1;
+        return branches;
+    }
+
+    /**
+     * 当前局面已走过的步数
+     * @return 步数
+     */
+    public int size() {
+        return depth;
+    }
+
+    public boolean isEmpty() {
+        return current == ROOT;
+    }
+
+    /**
+     * 清空整棵历史树
+     */
+    public void clear() {
+        generation++;
+        count = 1;
+        current = ROOT;
+        depth = 0;
+        parent[ROOT] = -1;
+        firstChild[ROOT] = -1;
+        nextSibling[ROOT] = -1;
+    }
+
+    /**
+     * 当前节点的编号，在下一次 clear 之前可以作为历史中的位置标记
+     * @return 节点编号
+     */
+    public int position() {
+        return current;
+    }
+
+    /**
+     * 历史被清空的次数，用于判断之前取得的位置标记是否仍然有效
+     * @return 代数
+     */
+    public int generation() {
+        return generation;
+    }
+
+    /**
+     * 计算从标记位置走到当前位置的操作：先撤销到两者的公共祖先，再沿当前分支前进
+     * 耗时与两个位置之间的步数成正比，与历史总长度无关
+     * @param mark 标记位置，必须是同一代内 position 的返回值
+     * @param markDepth 标记位置的步数
+     * @return 按先后顺序的操作，UNDO 表示撤销一步，其余为移动编码
+     */
+    public int[] diff(int mark, int markDepth) {
+        int a = mark, b = current;
+        int da = markDepth, db = depth;
+        int undos = 0;
+        int forward = 0;
+        while (da > db) {
+            a = parent[a];
+            da--;
+            undos++;
+        }
+        while (db > da) {
+            b = parent[b];
+            db--;
+            forward++;
+        }
+        while (a != b) {
+            a = parent[a];
+            b = parent[b];
+            undos++;
+            forward++;
+        }
+        int[] ops = new int[undos + forward];
+        Arrays.fill(ops, 0, undos, UNDO);
+        int i = ops.length;
+        for (int n = current; n != b; n = parent[n]) {
+            ops[--i] = moves[n];
+        }
+        return ops;
+    }
+
+    /**
+     * 从初始局面到当前局面的移动编码，用于一次性写入存档
+     * 其他分支不写入存档
+     * @return 按先后顺序的移动编码
+     */
+    public int[] toArray() {
+        int[] path = new int[depth];
+        int i = depth;
+        for (int n = current; n != ROOT; n = parent[n]) {
+            path[--i] = moves[n];
+        }
+        return path;
+    }
+
+    /**
+     * 用给定的移动序列替换全部历史
+     * @param src 按先后顺序的移动编码
+     */
+    public void setAll(int[] src) {
+        clear();
+        for (int move : src) push(move);
+    }
+
+    private void grow() {
+        int capacity = parent.length * 2;
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+    }
+}
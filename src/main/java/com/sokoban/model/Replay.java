@@ -0,0 +1,142 @@
+package com.sokoban.model;
+
+import java.util.Arrays;
+
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 移动序列的重放器，从关卡初始局面出发按顺序执行每一步
+ * 局面用一个 BoardState 表示，重放过程中不创建男孩、箱子或任何其他对象，十万步也只需几毫秒。
+ * 移动序列可以是移动编码（见 MoveHistory），也可以是 LURD 字符串（小写为行走，大写为推动）
+ */
+public final class Replay implements Direction {
+    private static final int INITIAL_FACING = DOWN;  // 进入关卡时男孩的朝向，与 Boy 一致
+
+    private final BoardState start;     // 初始局面
+    private final BoardState state;     // 当前局面，随 append 变化
+    private int[] moves = new int[64];  // 移动编码
+    private int length;                 // 总步数
+
+    /**
+     * @param data 关卡数据
+     */
+    public Replay(LevelData data) {
+        this.start = data.newState();
+        this.state = new BoardState(start);
+    }
+
+    /**
+     * 重放移动编码序列，推动标记必须与实际局面一致
+     * @param data 关卡数据
+     * @param moves 按先后顺序的移动编码
+     * @return 重放器，当前局面为最后一步之后
+     * @throws IllegalArgumentException 某一步无法执行或推动标记不符
+     */
+    public static Replay of(LevelData data, int[] moves) {
+        Replay replay = new Replay(data);
+        for (int i = 0; i < moves.length; i++) {
+            int result = replay.append(MoveHistory.direction(moves[i]));
+            if (result == BoardState.MOVE_BLOCKED
+                    || (result == BoardState.MOVE_PUSH) != MoveHistory.isPush(moves[i])) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 步与关卡不符");
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * 重放 LURD 字符串，大小写必须与实际是否推动一致
+     * @param data 关卡数据
+     * @param lurd 移动字符串，忽略空白
+     * @return 重放器，当前局面为最后一步之后
+     * @throws IllegalArgumentException 含有无法识别的字符、某一步无法执行或大小写不符
+     */
+    public static Replay parse(LevelData data, CharSequence lurd) {
+        Replay replay = new Replay(data);
+        for (int i = 0; i < lurd.length(); i++) {
+            char c = lurd.charAt(i);
+            if (Character.isWhitespace(c)) continue;
+            int direction = "urdl".indexOf(Character.toLowerCase(c)) + 1;
+            if (direction == 0) throw new IllegalArgumentException("无法识别的移动: " + c);
+            int result = replay.append(direction);
+            if (result == BoardState.MOVE_BLOCKED
+                    || (result == BoardState.MOVE_PUSH) != Character.isUpperCase(c)) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 个字符与关卡不符");
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * 在序列末尾追加一步并执行
+     * @param direction 方向
+     * @return MOVE_BLOCKED（不记录）、MOVE_WALK 或 MOVE_PUSH
+     */
+    public int append(int direction) {
+        int result = state.move(direction);
+        if (result == BoardState.MOVE_BLOCKED) return result;
+
+        if (length == moves.length) moves = Arrays.copyOf(moves, length * 2);
+        moves[length] = MoveHistory.encode(direction, result == BoardState.MOVE_PUSH, facingAt(length));
+        length++;
+        return result;
+    }
+
+    /**
+     * 当前局面，即最后一步之后的局面
+     * @return 局面，随重放器变化
+     */
+    public BoardState getState() {
+        return state;
+    }
+
+    /**
+     * 当前局面下男孩的朝向，即最后一步的方向
+     * @return 方向
+     */
+    public int getFacing() {
+        return facingAt(length);
+    }
+
+    /**
+     * 总步数
+     * @return 步数
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * 全部移动编码，可以直接交给 MoveHistory.setAll
+     * @return 按先后顺序的移动编码
+     */
+    public int[] toMoves() {
+        return Arrays.copyOf(moves, length);
+    }
+
+    /**
+     * 转换为 LURD 字符串
+     * @return 移动字符串，推动为大写
+     */
+    public String toLurd() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = "urdl".charAt(MoveHistory.direction(moves[i]) - 1);
+            sb.append(MoveHistory.isPush(moves[i]) ? Character.toUpperCase(c) : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 获取地图布局
+     * @return 布局
+     */
+    public MapLayout getLayout() {
+        return start.getLayout();
+    }
+
+    // 第 step 步之前男孩的朝向
+    private int facingAt(int step) {
+        return step == 0 ? INITIAL_FACING : MoveHistory.direction(moves[step - 1]);
+    }
+}
@@ -0,0 +1,212 @@
+package com.sokoban.model;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sokoban.model.map.GameMapCell;
+
+/**
+ * 标准 XSB/SOK 关卡集的流式读取器
+ * 每次调用 next 只读入一个关卡，几千个关卡的合集也不会一次全部载入内存。
+ * 支持的符号：# 墙、空格/-/_ 地面、$ 箱子、. 目标点、* 目标点上的箱子、@ 男孩、+ 目标点上的男孩，
+ * 以及 SOK 的行程编码（数字表示重复次数，| 表示换行）。
+ * 不是地图行的内容（标题、注释、Title: 等元数据）作为关卡之间的分隔；
+ * 地图前的第一行非空文本或地图后的 Title: 作为关卡标题。
+ * 从男孩出发能走到的地面记为通道，地图外侧的地面记为空白；关卡尺寸按每关实际行列数确定
+ */
+public class XsbReader implements Closeable {
+    private final BufferedReader in;
+    private int nextLevel;          // 下一个关卡的编号
+    private String lookahead;       // 已读入但属于下一个关卡的地图行
+    private String pendingTitle;    // 已读入但属于下一个关卡的标题
+    private String title;           // 最近一次返回的关卡的标题
+
+    /**
+     * @param in 关卡集文本
+     * @param firstLevel 第一个关卡的编号，之后依次递增
+     */
+    public XsbReader(Reader in, int firstLevel) {
+        this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        this.nextLevel = firstLevel;
+    }
+
+    /**
+     * 打开关卡集文件，关卡从 1 开始编号
+     * @param path 文件路径
+     * @return 读取器
+     * @throws IOException 文件读取异常
+     */
+    public static XsbReader open(Path path) throws IOException {
+        return new XsbReader(Files.newBufferedReader(path, StandardCharsets.UTF_8), 1);
+    }
+
+    /**
+     * 读取下一个关卡
+     * @return 关卡数据，没有更多关卡时返回 null
+     * @throws IOException 文件读取异常
+     */
+    public LevelData next() throws IOException {
+        List<String> rows = new ArrayList<>();
+        String levelTitle = pendingTitle;
+        pendingTitle = null;
+        if (lookahead != null) {
+            addRows(lookahead, rows);
+            lookahead = null;
+        }
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (isBoardLine(line)) {
+                addRows(line, rows);
+                continue;
+            }
+            if (rows.isEmpty()) {
+                // 地图之前：取第一行普通文本作为标题
+                if (levelTitle == null && isTitle(line.trim())) levelTitle = stripComment(line.trim());
+                continue;
+            }
+            // 地图结束：读取之后的元数据，直到下一张地图的第一行
+            for (; line != null; line = in.readLine()) {
+                if (isBoardLine(line)) {
+                    lookahead = line;
+                    break;
+                }
+                String text = line.trim();
+                if (text.regionMatches(true, 0, "Title:", 0, 6)) {
+                    levelTitle = text.substring(6).trim();
+                } else if (pendingTitle == null && isTitle(text)) {
+                    pendingTitle = stripComment(text);
+                }
+            }
+            break;
+        }
+        if (rows.isEmpty()) return null;
+        this.title = levelTitle;
+        return toLevel(nextLevel++, rows);
+    }
+
+    /**
+     * 最近一次 next 返回的关卡的标题
+     * @return 标题，没有时为 null
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // 普通文本行可以作为标题，带冒号的是 Author: 之类的元数据
+    private static boolean isTitle(String text) {
+        return !text.isEmpty() && text.indexOf(':') < 0;
+    }
+
+    private static String stripComment(String text) {
+        return text.startsWith(";") ? text.substring(1).trim() : text;
+    }
+
+    /**
+     * 判断一行是否为地图行：展开行程编码后只含地图符号，且至少有一面墙
+     */
+    static boolean isBoardLine(String line) {
+        boolean wall = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                wall = true;
+            } else if ("@+$*. -_|".indexOf(c) < 0 && !Character.isDigit(c)) {
+                return false;
+            }
+        }
+        return wall;
+    }
+
+    /**
+     * 展开行程编码并按 | 拆分为多行
+     */
+    private static void addRows(String line, List<String> rows) {
+        StringBuilder row = new StringBuilder();
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isDigit(c)) {
+                count = count * 10 + (c - '0');
+                continue;
+            }
+            if (c == '|') {
+                rows.add(row.toString());
+                row.setLength(0);
+            } else {
+                for (int k = Math.max(count, 1); k > 0; k--) row.append(c);
+            }
+            count = 0;
+        }
+        rows.add(row.toString());
+    }
+
+    /**
+     * 把地图行转换为地图编码，男孩能走到的地面记为通道，其余地面记为空白
+     */
+    private static LevelData toLevel(int level, List<String> rows) {
+        int width = 0;
+        for (String row : rows) width = Math.max(width, row.length());
+        int height = rows.size();
+        char[] grid = new char[width * height];
+        Arrays.fill(grid, ' ');
+        int player = -1;
+        for (int y = 0; y < height; y++) {
+            String row = rows.get(y);
+            for (int x = 0; x < row.length(); x++) {
+                char c = row.charAt(x);
+                grid[y * width + x] = c == '-' || c == '_' ? ' ' : c;
+                if (c == '@' || c == '+') player = y * width + x;
+            }
+        }
+
+        // 从男孩出发标记地图内部，没有男孩时所有地面都算内部
+        boolean[] inside = new boolean[grid.length];
+        if (player >= 0) {
+            int[] queue = new int[grid.length];
+            int head = 0, tail = 0;
+            queue[tail++] = player;
+            inside[player] = true;
+            while (head < tail) {
+                int cur = queue[head++];
+                int x = cur % width, y = cur / width;
+                int[] next = {x > 0 ? cur - 1 : -1, x + 1 < width ? cur + 1 : -1,
+                        y > 0 ? cur - width : -1, y + 1 < height ? cur + width : -1};
+                for (int n : next) {
+                    if (n >= 0 && !inside[n] && grid[n] != '#') {
+                        inside[n] = true;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        } else {
+            Arrays.fill(inside, true);
+        }
+
+        byte[] codes = new byte[grid.length];
+        for (int i = 0; i < grid.length; i++) {
+            switch (grid[i]) {
+                case '#': codes[i] = GameMapCell.TYPE_BLOCK; break;
+                case '.': codes[i] = GameMapCell.TYPE_TARGET; break;
+                case '$': codes[i] = 3; break;
+                case '@': codes[i] = 5; break;
+                case '*': codes[i] = 6; break;
+                case '+': codes[i] = 7; break;
+                default: codes[i] = inside[i] ? (byte) GameMapCell.TYPE_WAY : GameMapCell.TYPE_BLANK; break;
+            }
+        }
+        return LevelData.fromCodes(level, codes, width, height);
+    }
+}
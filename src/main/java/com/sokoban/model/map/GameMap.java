@@ -4,26 +4,45 @@ import java.awt.Graphics;
 
 /**
  * GameMap类表示游戏地图，包含地图的基本属性和操作方法
+ * 单元格按 y * cols + x 存放在一维数组中，数组大小与地图尺寸一致，支持任意行列数
  */
 public class GameMap {
-    // 定义地图的行数和列数，均为20
-    private static final int rows = 20;
-    private static final int cols = 20;
+    // 内置关卡地图的默认行数和列数
+    public static final int DEFAULT_SIZE = 20;
 
-    // 存储地图单元格的二维数组
-    public final GameMapCell[][] data = new GameMapCell[cols][rows];
+    // 地图的行数和列数
+    private final int rows;
+    private final int cols;
 
-    // 地图的宽度和高度属性
+    // 按 y * cols + x 存放的地图单元格，没有单元格的位置为 null
+    private final GameMapCell[] cells;
+
+    // 地图的宽度和高度属性（像素）
     final public int width;
     final public int height;
 
+    // 按格子下标展开的静态布局，首次使用时构建
+    private MapLayout layout;
+
     /**
-     * 构造函数，初始化地图的宽度和高度
-     * 地图的宽度和高度由单元格数量和单元格宽度共同决定
+     * 创建 20x20 的地图
      */
     public GameMap() {
-        width = rows * GameMapCell.width;
-        height = cols * GameMapCell.width;
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    /**
+     * 创建指定尺寸的地图
+     * 地图的宽度和高度由单元格数量和单元格宽度共同决定
+     * @param cols 列数
+     * @param rows 行数
+     */
+    public GameMap(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = new GameMapCell[cols * rows];
+        width = cols * GameMapCell.width;
+        height = rows * GameMapCell.width;
     }
 
     /**
@@ -31,7 +50,7 @@ public class GameMap {
      * @param cell 要添加的GameMapCell对象
      */
     public void add(GameMapCell cell) {
-        data[cell.y][cell.x] = cell;
+        cells[cell.y * cols + cell.x] = cell;
     }
 
     /**
@@ -42,27 +61,50 @@ public class GameMap {
      */
     public GameMapCell get(int x, int y) {
         if (x >= 0 && x < cols && y >= 0 && y < rows) {
-            return data[y][x];
+            return cells[y * cols + x];
         }
         return null;
     }
 
+    /**
+     * 获取地图行数
+     * @return 行数
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * 获取地图列数
+     * @return 列数
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * 获取地图的静态布局（格子下标、相邻关系、目标点）
+     * 布局在地图单元格全部添加完成后首次调用时构建，之后复用
+     * @return 地图布局
+     */
+    public synchronized MapLayout getLayout() {
+        if (layout == null) {
+            layout = new MapLayout(this);
+        }
+        return layout;
+    }
+
     /**
      * 绘制地图上的所有单元格
      * @param g 图形上下文对象，用于绘制
      */
     public void paint(Graphics g) {
-        GameMapCell[][] data = this.data;
-        GameMapCell cell;
         // 遍历地图上的所有单元格
-        for (int i = 0; i < 20; i++) {
-            for (int j = 0; j < 20; j++) {
-                cell = data[i][j];
-                // 如果单元格存在，则绘制它
-                if (cell != null) {
-                    cell.paint(g);
-                }
+        for (GameMapCell cell : cells) {
+            // 如果单元格存在，则绘制它
+            if (cell != null) {
+                cell.paint(g);
             }
         }
     }
-}
\ No newline at end of file
+}
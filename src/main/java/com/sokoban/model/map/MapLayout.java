@@ -0,0 +1,221 @@
+package com.sokoban.model.map;
+
+import com.sokoban.model.Direction;
+
+/**
+ * 地图静态布局类，把二维地图展开为一维格子下标 (index = y * width + x)
+ * 预先计算每个格子在四个方向上的相邻格子、目标点集合以及静态死格，
+ * 供关卡逻辑和求解器在不创建对象的情况下做移动判定。布局随 GameMap 缓存，每张地图只计算一次
+ */
+public final class MapLayout implements Direction {
+    // 每个方向在x、y上的偏移，下标为 方向常量 - 1
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    public final int width;   // 列数
+    public final int height;  // 行数
+    public final int size;    // 格子总数
+    public final int words;   // 按位存储一张地图需要的 long 个数
+
+    private final boolean[] floor;   // 是否为可行走格子（通道或目标点）
+    private final boolean[] target;  // 是否为目标点
+    private final int[] next;        // 相邻格子表，next[index * 4 + 方向 - 1]，不可行走为 -1
+    private final int[] targets;     // 所有目标点下标
+    private final long[] targetMask; // 目标点位图
+    private final long[] deadMask;   // 死格位图：箱子在此格上永远无法推到任何目标点
+
+    /**
+     * 根据地图构建布局
+     * @param map 已完成加载的游戏地图
+     */
+    MapLayout(GameMap map) {
+        this.width = map.getCols();
+        this.height = map.getRows();
+        this.size = width * height;
+        this.words = (size + 63) >>> 6;
+        this.floor = new boolean[size];
+        this.target = new boolean[size];
+        int targetCount = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                GameMapCell cell = map.get(x, y);
+                if (cell == null) continue;
+                int i = y * width + x;
+                switch (cell.type) {
+                    case GameMapCell.TYPE_TARGET:
+                        target[i] = true;
+                        targetCount++;
+                        floor[i] = true;
+                        break;
+                    case GameMapCell.TYPE_WAY:
+                        floor[i] = true;
+                        break;
+                }
+            }
+        }
+        this.targets = new int[targetCount];
+        this.targetMask = new long[words];
+        this.next = new int[size * 4];
+        int t = 0;
+        for (int i = 0; i < size; i++) {
+            if (target[i]) {
+                targets[t++] = i;
+                targetMask[i >>> 6] |= 1L << i;
+            }
+            int x = i % width, y = i / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                int n = -1;
+                if (nx >= 0 && nx < width && ny >= 0 && ny < height && floor[ny * width + nx]) {
+                    n = ny * width + nx;
+                }
+                next[i * 4 + d] = n;
+            }
+        }
+        this.deadMask = computeDeadSquares();
+    }
+
+    /**
+     * 计算静态死格
+     * 从每个目标点出发反向“拉”箱子：箱子能从 c 推到 b，要求 c 和男孩站位 c 的另一侧都可行走。
+     * 所有能被拉到的格子都是活格，其余可行走格子（角落、没有目标点的贴墙段等）都是死格。
+     * 只考虑墙，不考虑其他箱子，因此死格判定总是安全的
+     * @return 死格位图
+     */
+    private long[] computeDeadSquares() {
+        boolean[] live = new boolean[size];
+        int[] queue = new int[size];
+        int head = 0, tail = 0;
+        for (int t : targets) {
+            live[t] = true;
+            queue[tail++] = t;
+        }
+        while (head < tail) {
+            int box = queue[head++];
+            for (int d = UP; d <= LEFT; d++) {
+                // 箱子沿方向 d 被推到 box，推之前在 prev，男孩站在 prev 的反方向
+                int prev = step(box, opposite(d));
+                if (prev < 0 || live[prev]) continue;
+                if (step(prev, opposite(d)) < 0) continue;
+                live[prev] = true;
+                queue[tail++] = prev;
+            }
+        }
+        long[] mask = new long[words];
+        for (int i = 0; i < size; i++) {
+            if (floor[i] && !live[i]) {
+                mask[i >>> 6] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 计算坐标对应的格子下标
+     * @param x x坐标
+     * @param y y坐标
+     * @return 格子下标
+     */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /**
+     * 格子下标对应的x坐标
+     * @param index 格子下标
+     * @return x坐标
+     */
+    public int x(int index) {
+        return index % width;
+    }
+
+    /**
+     * 格子下标对应的y坐标
+     * @param index 格子下标
+     * @return y坐标
+     */
+    public int y(int index) {
+        return index / width;
+    }
+
+    /**
+     * 判断格子是否可行走
+     * @param index 格子下标
+     * @return 是否为通道或目标点
+     */
+    public boolean isFloor(int index) {
+        return floor[index];
+    }
+
+    /**
+     * 判断格子是否为目标点
+     * @param index 格子下标
+     * @return 是否为目标点
+     */
+    public boolean isTarget(int index) {
+        return target[index];
+    }
+
+    /**
+     * 判断格子是否为死格，箱子推到死格后本关必定无解
+     * @param index 格子下标
+     * @return 是否为死格
+     */
+    public boolean isDead(int index) {
+        return (deadMask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 获取死格位图的第 w 个字
+     * @param w 字序号
+     * @return 64 个格子的死格标记
+     */
+    public long deadWord(int w) {
+        return deadMask[w];
+    }
+
+    /**
+     * 获取指定方向上的相邻可行走格子
+     * @param index 格子下标
+     * @param direction 方向（Direction 中的常量）
+     * @return 相邻格子下标，越界或不可行走时返回 -1
+     */
+    public int step(int index, int direction) {
+        return next[index * 4 + direction - 1];
+    }
+
+    /**
+     * 获取目标点数量
+     * @return 目标点数量
+     */
+    public int getTargetCount() {
+        return targets.length;
+    }
+
+    /**
+     * 获取第 i 个目标点的下标
+     * @param i 序号
+     * @return 格子下标
+     */
+    public int getTarget(int i) {
+        return targets[i];
+    }
+
+    /**
+     * 获取目标点位图的第 w 个字
+     * @param w 字序号
+     * @return 64 个格子的目标点标记
+     */
+    public long targetWord(int w) {
+        return targetMask[w];
+    }
+
+    /**
+     * 获取相反方向
+     * @param direction 方向
+     * @return 相反方向
+     */
+    public static int opposite(int direction) {
+        return (direction + 1) % 4 + 1;
+    }
+}
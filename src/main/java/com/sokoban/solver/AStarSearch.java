@@ -0,0 +1,129 @@
+package com.sokoban.solver;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.DeadlockDetector;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 以推动次数为代价的 A* 搜索
+ * 启发函数是箱子到目标点的最小代价完美匹配（匈牙利算法），代价矩阵为预先计算的推动距离。
+ * 一次推动最多让匹配代价减少 1，启发函数可采纳且一致，第一次展开的目标局面即推动次数最少的解。
+ *
+ * 展开一个节点时先对其完整计算一次匹配并保存，再对每个子节点只增量更新被推动箱子所在的一行，
+ * 子节点的估值因此是 O(n * m) 而不是 O(n * n * m)。
+ *
+ * 启用宏移动时，隧道和目标房间中的一串推动作为一个子节点生成，代价为其中的推动次数，
+ * 返回前再展开为逐次推动，见 MacroMoves
+ */
+final class AStarSearch extends Search {
+
+    AStarSearch(Solver solver, long deadline) {
+        super(solver, deadline);
+    }
+
+    @Override
+    int[] run() {
+        int boxCount = start.getBoxCount();
+        int targetCount = layout.getTargetCount();
+        if (boxCount > targetCount) return null;  // 箱子比目标点多，不可能过关
+
+        Reachability reach = new Reachability(layout);
+        Reachability childReach = new Reachability(layout);
+        Zobrist zobrist = new Zobrist(layout);
+        DeadlockDetector detector = new DeadlockDetector(layout);
+        TranspositionTable table = newTable();
+        NodeStore store = newNodeStore();
+        HungarianMatcher matcher = new HungarianMatcher(new PushDistances(layout), boxCount, targetCount);
+        BucketQueue open = newOpenList();
+        MacroMoves macros = macroMoves && MacroMoves.fits(layout) ? new MacroMoves(layout, start) : null;
+        BoardState state = new BoardState(start);
+        int[] rows = new int[boxCount];
+
+        state.setPlayer(reach.fill(start.getPlayer(), state));
+        int h = matcher.match(boxCells(state, rows));
+        if (h >= PushDistances.INFINITE) return null;
+        int root = store.add(state, -1, 0);
+        table.put(zobrist.hash(state), 0, root);
+        open.push(h, 0, root);
+
+        while (!open.isEmpty()) {
+            if (outOfBudget()) return null;
+            long entry = open.pop();
+            int node = (int) entry;
+            int g = (int) (entry >>> 32);
+            store.load(node, state);
+            long boxHash = zobrist.boxHash(state);
+            // 之后又找到了更短的路径，这个条目已过期
+            int best = table.getDepth(zobrist.withPlayer(boxHash, state.getPlayer()));
+            if (best >= 0 && best < g) continue;
+
+            nodes++;
+            if (state.isSolved()) {
+                int[] path = store.path(node);
+                return macros == null ? path : macros.expand(path);
+            }
+
+            matcher.match(boxCells(state, rows));
+            matcher.save();
+            reach.fill(state.getPlayer(), state);
+            for (int row = 0; row < boxCount; row++) {
+                int box = rows[row];
+                for (int d = UP; d <= LEFT; d++) {
+                    int dest = layout.step(box, d);
+                    if (dest < 0 || state.hasBox(dest) || layout.isDead(dest)) continue;
+                    int behind = layout.step(box, MapLayout.opposite(d));
+                    if (behind < 0 || !reach.reached(behind)) continue;
+
+                    int player = state.getPlayer();
+                    state.moveBox(box, dest);
+                    int end = dest, stand = box, cost = 1;
+                    int move = NodeStore.encodeMove(box, d);
+                    if (macros != null) {
+                        int k = macros.goalRoomFill(state, dest, d);
+                        if (k >= 0) {
+                            end = macros.fillTarget(k);
+                            stand = macros.fillPlayer(k);
+                            cost += macros.fillCost(k);
+                            move = macros.encodeGoal(move, k);
+                        } else {
+                            int extra = macros.tunnelPushes(state, dest, d);
+                            for (int i = 0; i < extra; i++) {
+                                stand = end;
+                                end = layout.step(end, d);
+                            }
+                            cost += extra;
+                            move = macros.encodeTunnel(move, extra);
+                        }
+                        state.moveBox(dest, end);
+                    }
+                    if (!detector.isDeadlockAfterPush(state, end)) {
+                        matcher.restore();
+                        int childH = matcher.update(row, end);
+                        if (childH < PushDistances.INFINITE) {
+                            state.setPlayer(childReach.fill(stand, state));
+                            long key = zobrist.withPlayer(zobrist.move(boxHash, box, end), state.getPlayer());
+                            if (table.put(key, g + cost, store.size()) != TranspositionTable.DUPLICATE) {
+                                int child = store.add(state, node, move);
+                                open.push(g + cost + childH, g + cost, child);
+                            }
+                        }
+                    }
+                    state.moveBox(end, box);
+                    state.setPlayer(player);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按位图顺序列出箱子所在格子，作为匹配矩阵的行
+     */
+    private static int[] boxCells(BoardState state, int[] rows) {
+        int r = 0;
+        for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+            rows[r++] = box;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,271 @@
+package com.sokoban.solver;
+
+import java.util.Arrays;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.DeadlockDetector;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 双向广度优先搜索：正向推箱子与反向拉箱子同时进行，两侧局面相遇时拼接出解法
+ * 反向搜索从所有“箱子全部在目标点上”的局面出发，男孩可以位于箱子分隔出的任一区域。
+ * 拉动是推动的逆操作：男孩站在箱子旁，向远离箱子的方向后退一格并把箱子拉到自己原来的位置。
+ * 每次扩展当前层较小的一侧，一整层展开完后取本层所有相遇中总推动次数最小的一个，
+ * 因此结果与单向 BFS 一样是推动次数最少的解，而每一侧只需搜索约一半的深度。
+ *
+ * 移动规则与正向搜索相同（男孩只能走通道和目标点，箱子只能进入没有箱子的通道或目标点），
+ * 反向侧不需要死格剪枝：能被拉到的格子必然不是静态死格，拉出的局面也必然能推回目标
+ */
+final class BidirectionalSearch extends Search {
+    private static final int MAX_GOAL_SETS = 4096;  // 目标点多于箱子时，反向起点组合数的上限
+
+    private final Zobrist zobrist;
+
+    BidirectionalSearch(Solver solver, long deadline) {
+        super(solver, deadline);
+        this.zobrist = new Zobrist(layout);
+    }
+
+    /**
+     * 一个搜索方向的节点和已访问表，节点按层连续存放
+     */
+    private final class Side {
+        final NodeStore store = newNodeStore();
+        final TranspositionTable table = newTable();
+        int layerStart, layerEnd;  // 当前待展开层在 store 中的范围
+        int depth;                 // 当前待展开层的推动次数
+
+        int add(BoardState state, int parent, int move, int depth) {
+            long key = zobrist.hash(state);
+            if (table.put(key, depth, store.size()) != TranspositionTable.NEW) return -1;
+            return store.add(state, parent, move);
+        }
+
+        int frontier() {
+            return layerEnd - layerStart;
+        }
+
+        void nextLayer() {
+            layerStart = layerEnd;
+            layerEnd = store.size();
+            depth++;
+        }
+    }
+
+    // 本层找到的最优相遇：正向节点、反向节点、总推动次数
+    private int meetForward, meetBackward, meetCost;
+
+    @Override
+    int[] run() {
+        int boxCount = start.getBoxCount();
+        if (boxCount > layout.getTargetCount()) return null;  // 箱子比目标点多，不可能过关
+
+        Reachability reach = new Reachability(layout);
+        BoardState state = new BoardState(start);
+        state.setPlayer(reach.fill(start.getPlayer(), state));
+        if (state.isSolved()) return new int[0];
+
+        Side forward = new Side();
+        Side backward = new Side();
+        forward.add(state, -1, 0, 0);
+        forward.layerEnd = forward.store.size();
+        boolean pull = addGoals(backward, reach, boxCount);
+        backward.layerEnd = backward.store.size();
+
+        meetCost = Integer.MAX_VALUE;
+        while (forward.frontier() > 0 && (!pull || backward.frontier() > 0)) {
+            // 目标组合过多时不建立反向搜索，只做正向搜索并在生成子节点时判断目标
+            if (!pull || forward.frontier() <= backward.frontier()) {
+                if (!expandForward(forward, backward)) return null;
+                forward.nextLayer();
+            } else {
+                if (!expandBackward(backward, forward)) return null;
+                backward.nextLayer();
+            }
+            if (meetCost != Integer.MAX_VALUE) {
+                return join(forward.store, meetForward, backward.store, meetBackward);
+            }
+        }
+        // 置换表淘汰过条目时，相遇检查可能查不到另一侧已访问的局面，两侧耗尽不能说明无解
+        if (pull && (forward.table.evictions() > 0 || backward.table.evictions() > 0)) {
+            markLimitReached();
+        }
+        return null;
+    }
+
+    /**
+     * 把所有目标局面作为反向搜索的根节点
+     * @return 是否建立了反向搜索；目标点组合数超过上限时返回 false
+     */
+    private boolean addGoals(Side backward, Reachability reach, int boxCount) {
+        int targets = layout.getTargetCount();
+        if (combinations(targets, boxCount) > MAX_GOAL_SETS) return false;
+
+        int[] chosen = new int[boxCount];
+        for (int i = 0; i < boxCount; i++) chosen[i] = i;
+        BoardState goal = new BoardState(layout);
+        boolean[] covered = new boolean[layout.size];
+        while (true) {
+            for (int i = 0; i < boxCount; i++) goal.addBox(layout.getTarget(chosen[i]));
+            // 箱子把地面分成若干区域，每个区域对应一个标准化男孩位置
+            Arrays.fill(covered, false);
+            for (int cell = 0; cell < layout.size; cell++) {
+                if (!layout.isFloor(cell) || goal.hasBox(cell) || covered[cell]) continue;
+                goal.setPlayer(reach.fill(cell, goal));
+                for (int c = cell; c < layout.size; c++) {
+                    if (reach.reached(c)) covered[c] = true;
+                }
+                backward.add(goal, -1, 0, 0);
+            }
+            for (int i = 0; i < boxCount; i++) goal.removeBox(layout.getTarget(chosen[i]));
+
+            // 下一个组合
+            int i = boxCount - 1;
+            while (i >= 0 && chosen[i] == targets - boxCount + i) i--;
+            if (i < 0) break;
+            chosen[i]++;
+            for (int j = i + 1; j < boxCount; j++) chosen[j] = chosen[j - 1] + 1;
+        }
+        return true;
+    }
+
+    /**
+     * 展开正向搜索的一整层，子局面与反向已访问局面比较
+     * @return false 表示达到上限
+     */
+    private boolean expandForward(Side forward, Side backward) {
+        Reachability reach = new Reachability(layout);
+        Reachability childReach = new Reachability(layout);
+        DeadlockDetector detector = new DeadlockDetector(layout);
+        BoardState state = new BoardState(layout);
+        BoardState other = new BoardState(layout);
+        for (int node = forward.layerStart; node < forward.layerEnd; node++) {
+            if (outOfBudget()) return false;
+            nodes++;
+            forward.store.load(node, state);
+            reach.fill(state.getPlayer(), state);
+            for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+                for (int d = UP; d <= LEFT; d++) {
+                    int dest = layout.step(box, d);
+                    if (dest < 0 || state.hasBox(dest) || layout.isDead(dest)) continue;
+                    int behind = layout.step(box, MapLayout.opposite(d));
+                    if (behind < 0 || !reach.reached(behind)) continue;
+
+                    int player = state.getPlayer();
+                    state.moveBox(box, dest);
+                    if (!detector.isDeadlockAfterPush(state, dest)) {
+                        state.setPlayer(childReach.fill(box, state));
+                        int child = forward.add(state, node, NodeStore.encodeMove(box, d), forward.depth + 1);
+                        if (child >= 0) {
+                            if (state.isSolved()) {
+                                meet(child, -1, forward.depth + 1);
+                            } else {
+                                meetOther(state, other, backward, forward.depth + 1, child, true);
+                            }
+                        }
+                    }
+                    state.moveBox(dest, box);
+                    state.setPlayer(player);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 展开反向搜索的一整层，子局面与正向已访问局面比较
+     * 节点的推动编码记录为对应的正向推动：箱子从男孩所在格子推回原来的格子
+     * @return false 表示达到上限
+     */
+    private boolean expandBackward(Side backward, Side forward) {
+        Reachability reach = new Reachability(layout);
+        Reachability childReach = new Reachability(layout);
+        BoardState state = new BoardState(layout);
+        BoardState other = new BoardState(layout);
+        for (int node = backward.layerStart; node < backward.layerEnd; node++) {
+            if (outOfBudget()) return false;
+            nodes++;
+            backward.store.load(node, state);
+            reach.fill(state.getPlayer(), state);
+            for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+                for (int d = UP; d <= LEFT; d++) {
+                    // 男孩站在箱子的 d 方向一侧，再向 d 方向后退一格
+                    int stand = layout.step(box, d);
+                    if (stand < 0 || !reach.reached(stand)) continue;
+                    int back = layout.step(stand, d);
+                    if (back < 0 || state.hasBox(back)) continue;
+
+                    int player = state.getPlayer();
+                    state.moveBox(box, stand);
+                    state.setPlayer(childReach.fill(back, state));
+                    int move = NodeStore.encodeMove(stand, MapLayout.opposite(d));
+                    int child = backward.add(state, node, move, backward.depth + 1);
+                    if (child >= 0) {
+                        meetOther(state, other, forward, backward.depth + 1, child, false);
+                    }
+                    state.moveBox(stand, box);
+                    state.setPlayer(player);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 检查新局面是否已被另一侧访问过，是则记录一次相遇
+     * 只比较哈希可能误判，取出另一侧的节点逐位比较后才确认
+     */
+    private void meetOther(BoardState state, BoardState other, Side side, int depth, int child, boolean isForward) {
+        long key = zobrist.hash(state);
+        int node = side.table.getPayload(key);
+        if (node < 0 || node >= side.store.size()) return;
+        side.store.load(node, other);
+        if (!state.equals(other)) return;
+        int cost = depth + side.table.getDepth(key);
+        if (isForward) {
+            meet(child, node, cost);
+        } else {
+            meet(node, child, cost);
+        }
+    }
+
+    private void meet(int forwardNode, int backwardNode, int cost) {
+        if (cost < meetCost) {
+            meetCost = cost;
+            meetForward = forwardNode;
+            meetBackward = backwardNode;
+        }
+    }
+
+    /**
+     * 拼接正向路径与反向路径
+     * 反向节点从相遇点回溯到目标局面，经过的推动编码正好是按先后顺序的正向推动
+     */
+    private static int[] join(NodeStore forward, int forwardNode, NodeStore backward, int backwardNode) {
+        int[] head = forward.path(forwardNode);
+        int tail = 0;
+        if (backwardNode >= 0) {
+            for (int n = backwardNode; backward.parent(n) >= 0; n = backward.parent(n)) tail++;
+        }
+        int[] path = Arrays.copyOf(head, head.length + tail);
+        int i = head.length;
+        if (backwardNode >= 0) {
+            for (int n = backwardNode; backward.parent(n) >= 0; n = backward.parent(n)) {
+                path[i++] = backward.move(n);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * 组合数 C(n, k)，超过 Integer.MAX_VALUE 时截断
+     */
+    private static long combinations(int n, int k) {
+        long c = 1;
+        for (int i = 1; i <= k; i++) {
+            c = c * (n - k + i) / i;
+            if (c > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        }
+        return c;
+    }
+}
@@ -0,0 +1,69 @@
+package com.sokoban.solver;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.DeadlockDetector;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 按推动次数逐层展开的广度优先搜索，第一次遇到的目标局面就是推动次数最少的解
+ */
+final class BreadthFirstSearch extends Search {
+
+    BreadthFirstSearch(Solver solver, long deadline) {
+        super(solver, deadline);
+    }
+
+    @Override
+    int[] run() {
+        Reachability reach = new Reachability(layout);
+        Reachability childReach = new Reachability(layout);
+        Zobrist zobrist = new Zobrist(layout);
+        DeadlockDetector detector = new DeadlockDetector(layout);
+        TranspositionTable table = newTable();
+        NodeStore store = newNodeStore();
+        BoardState state = new BoardState(start);
+
+        state.setPlayer(reach.fill(start.getPlayer(), state));
+        int root = store.add(state, -1, 0);
+        table.put(zobrist.hash(state), 0, root);
+        if (state.isSolved()) return store.path(root);
+
+        // 节点按层追加到 store 中，head 即广度优先队列的队头
+        int head = 0, layerEnd = store.size(), depth = 0;
+        while (head < store.size()) {
+            if (outOfBudget()) return null;
+            if (head == layerEnd) {
+                layerEnd = store.size();
+                depth++;
+            }
+            int node = head++;
+            nodes++;
+            store.load(node, state);
+            long boxHash = zobrist.boxHash(state);
+            reach.fill(state.getPlayer(), state);
+            for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+                for (int d = UP; d <= LEFT; d++) {
+                    int dest = layout.step(box, d);
+                    if (dest < 0 || state.hasBox(dest) || layout.isDead(dest)) continue;
+                    int behind = layout.step(box, MapLayout.opposite(d));
+                    if (behind < 0 || !reach.reached(behind)) continue;
+
+                    // 推动箱子，生成子局面后再恢复
+                    int player = state.getPlayer();
+                    state.moveBox(box, dest);
+                    if (!detector.isDeadlockAfterPush(state, dest)) {
+                        state.setPlayer(childReach.fill(box, state));
+                        long key = zobrist.withPlayer(zobrist.move(boxHash, box, dest), state.getPlayer());
+                        if (table.put(key, depth + 1, store.size()) == TranspositionTable.NEW) {
+                            int child = store.add(state, node, NodeStore.encodeMove(box, d));
+                            if (state.isSolved()) return store.path(child);
+                        }
+                    }
+                    state.moveBox(dest, box);
+                    state.setPlayer(player);
+                }
+            }
+        }
+        return null;
+    }
+}
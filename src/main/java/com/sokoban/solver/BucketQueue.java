@@ -0,0 +1,130 @@
+package com.sokoban.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A* 开放列表：按 f 值分桶的优先队列
+ * f 值是较小的整数（推动次数），每个桶是一个 long 栈，元素为 (g << 32 | 节点编号)。
+ * 同一个桶内后进先出，相同 f 值时优先展开较新（通常 g 较大）的节点。
+ *
+ * 栈由定长分块组成，分块是 LongBuffer，可以包装堆内数组，也可以位于堆外直接内存（见 offHeap）。
+ * 分块一经分配不再复制，栈缩短后空出的分块留给之后的入栈复用。
+ * 堆外分块的总字节数超出预算时抛出 OutOfMemoryError，由 Solver 记为达到上限
+ */
+final class BucketQueue {
+    private static final int CHUNK_SHIFT = 10;  // 每块 1024 个元素
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_BYTES = CHUNK_SIZE * 8;
+
+    private final boolean offHeap;
+    private final long maxChunks;                        // 预算允许分配的分块数
+    private final ArrayDeque<LongBuffer> free = new ArrayDeque<>();  // 空出的分块
+    private LongBuffer[][] buckets = new LongBuffer[64][];
+    private int[] sizes = new int[64];
+    private int min = Integer.MAX_VALUE;  // 可能非空的最小桶
+    private long size;
+    private long chunks;                  // 已分配的分块数
+
+    /**
+     * 创建位于堆内的开放列表
+     */
+    BucketQueue() {
+        this(false, Long.MAX_VALUE);
+    }
+
+    private BucketQueue(boolean offHeap, long maxChunks) {
+        this.offHeap = offHeap;
+        this.maxChunks = maxChunks;
+    }
+
+    /**
+     * 创建分块位于堆外直接内存的开放列表
+     * @param budgetBytes 允许使用的堆外内存字节数
+     * @return 开放列表
+     */
+    static BucketQueue offHeap(long budgetBytes) {
+        return new BucketQueue(true, budgetBytes / CHUNK_BYTES);
+    }
+
+    void push(int f, int g, int node) {
+        if (f >= buckets.length) {
+            int capacity = Math.max(f + 1, buckets.length * 2);
+            buckets = Arrays.copyOf(buckets, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        int n = sizes[f];
+        int chunk = n >>> CHUNK_SHIFT;
+        LongBuffer[] bucket = buckets[f];
+        if (bucket == null) {
+            bucket = buckets[f] = new LongBuffer[4];
+        } else if (chunk == bucket.length) {
+            bucket = buckets[f] = Arrays.copyOf(bucket, bucket.length * 2);
+        }
+        if (bucket[chunk] == null) bucket[chunk] = allocate();
+        bucket[chunk].put(n & CHUNK_MASK, ((long) g << 32) | (node & 0xFFFFFFFFL));
+        sizes[f] = n + 1;
+        if (f < min) min = f;
+        size++;
+    }
+
+    /**
+     * 弹出 f 值最小的元素
+     * @return (g << 32 | 节点编号)，队列为空时返回 -1
+     */
+    long pop() {
+        if (size == 0) return -1;
+        while (sizes[min] == 0) min++;
+        size--;
+        int n = --sizes[min];
+        LongBuffer[] bucket = buckets[min];
+        long value = bucket[n >>> CHUNK_SHIFT].get(n & CHUNK_MASK);
+        if ((n & CHUNK_MASK) == 0) {
+            // 分块已空，留给之后的入栈
+            free.push(bucket[n >>> CHUNK_SHIFT]);
+            bucket[n >>> CHUNK_SHIFT] = null;
+        }
+        return value;
+    }
+
+    /**
+     * 当前最小的 f 值
+     * @return f 值，队列为空时返回 Integer.MAX_VALUE
+     */
+    int minF() {
+        if (size == 0) return Integer.MAX_VALUE;
+        while (sizes[min] == 0) min++;
+        return min;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * 已分配分块占用的字节数
+     * @return 字节数
+     */
+    long bytes() {
+        return chunks * CHUNK_BYTES;
+    }
+
+    private LongBuffer allocate() {
+        LongBuffer chunk = free.poll();
+        if (chunk != null) return chunk;
+        if (chunks >= maxChunks) {
+            throw new OutOfMemoryError("开放列表超出堆外内存预算");
+        }
+        chunks++;
+        return offHeap ? ByteBuffer.allocateDirect(CHUNK_BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.wrap(new long[CHUNK_SIZE]);
+    }
+}
@@ -0,0 +1,114 @@
+package com.sokoban.solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁置换表，供多线程搜索共享
+ * 结构与 TranspositionTable 相同（开放寻址、固定容量），但 keys 和 depths 存放在 AtomicLongArray 中，
+ * 插入时用 CAS 抢占空槽，更新推动次数时用 CAS 保证只会变小。depths 中保存 推动次数 + 1，0 表示正在写入。
+ * 探测窗口已满时不替换旧条目（并发替换无法同时原子地更新 key 和推动次数），
+ * 直接视为新局面，最坏情况只是重复展开，不影响解的正确性
+ */
+public final class ConcurrentTranspositionTable {
+    private static final int PROBES = 8;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray depths;
+    private final int mask;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();  // 因窗口已满未能记录的次数
+
+    /**
+     * 创建置换表
+     * @param entries 期望容量，会向上取整为 2 的幂，最多 TranspositionTable.MAX_ENTRIES 条
+     */
+    public ConcurrentTranspositionTable(int entries) {
+        int capacity = TranspositionTable.roundUp(entries, TranspositionTable.MAX_ENTRIES);
+        keys = new AtomicLongArray(capacity);
+        depths = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * 记录一个局面
+     * @param key 局面哈希
+     * @param depth 推动次数
+     * @return TranspositionTable.NEW、DUPLICATE 或 IMPROVED
+     */
+    public int put(long key, int depth) {
+        if (key == 0) key = 1;
+        int slot = (int) TranspositionTable.mix(key) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            int s = (slot + i) & mask;
+            long k = keys.get(s);
+            if (k == 0) {
+                if (keys.compareAndSet(s, 0, key)) {
+                    depths.set(s, depth + 1L);
+                    size.incrementAndGet();
+                    return TranspositionTable.NEW;
+                }
+                k = keys.get(s);
+            }
+            if (k == key) {
+                return lower(s, depth);
+            }
+        }
+        // 探测窗口已满，不记录该局面
+        overflows.incrementAndGet();
+        return TranspositionTable.NEW;
+    }
+
+    /**
+     * 把槽位的推动次数降低到 depth
+     */
+    private int lower(int slot, int depth) {
+        long target = depth + 1L;
+        while (true) {
+            long d = readDepth(slot);
+            if (d <= target) return TranspositionTable.DUPLICATE;
+            if (depths.compareAndSet(slot, d, target)) return TranspositionTable.IMPROVED;
+        }
+    }
+
+    /**
+     * 读取槽位中保存的 推动次数 + 1
+     * 另一个线程刚抢到槽位、尚未写入推动次数时值为 0，短暂自旋等待
+     */
+    private long readDepth(int slot) {
+        long d;
+        while ((d = depths.get(slot)) == 0) {
+            Thread.onSpinWait();
+        }
+        return d;
+    }
+
+    /**
+     * 查询局面记录的推动次数
+     * @param key 局面哈希
+     * @return 推动次数，不存在返回 -1
+     */
+    public int getDepth(long key) {
+        if (key == 0) key = 1;
+        int slot = (int) TranspositionTable.mix(key) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            int s = (slot + i) & mask;
+            long k = keys.get(s);
+            if (k == key) return (int) (readDepth(s) - 1);
+            if (k == 0) return -1;
+        }
+        return -1;
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    public long overflows() {
+        return overflows.get();
+    }
+
+    public int capacity() {
+        return keys.length();
+    }
+}
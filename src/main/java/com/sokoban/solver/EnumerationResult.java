@@ -0,0 +1,43 @@
+package com.sokoban.solver;
+
+/**
+ * 穷举结果，包含最少推动次数、最优解的数量和状态空间统计
+ */
+public class EnumerationResult {
+    /**
+     * 穷举状态
+     */
+    public enum Status {
+        SOLVED,      // 已找到最优层，按要求在该层停止
+        EXHAUSTED,   // 可达状态空间已全部枚举
+        LIMIT        // 达到时间上限
+    }
+
+    public final int level;              // 关卡编号
+    public final Status status;          // 穷举状态
+    public final int optimalPushes;      // 最少推动次数，未找到解时为 -1
+    public final long solutionCount;     // 推动次数最少的不同推动序列数，超出 long 范围时为 Long.MAX_VALUE
+    public final long states;            // 已枚举的不同局面数（男孩位置已标准化）
+    public final int layers;             // 已完成的层数
+    public final long peakDiskBytes;     // 层文件和临时排序文件占用磁盘的峰值（字节）
+    public final long elapsedMillis;     // 耗时（毫秒）
+
+    public EnumerationResult(int level, Status status, int optimalPushes, long solutionCount, long states,
+                             int layers, long peakDiskBytes, long elapsedMillis) {
+        this.level = level;
+        this.status = status;
+        this.optimalPushes = optimalPushes;
+        this.solutionCount = solutionCount;
+        this.states = states;
+        this.layers = layers;
+        this.peakDiskBytes = peakDiskBytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Level %2d  %-9s optimal=%-4d solutions=%-12d states=%-12d layers=%-4d disk=%d MB  %6d ms",
+                level, status, optimalPushes, solutionCount, states, layers,
+                peakDiskBytes / (1024 * 1024), elapsedMillis);
+    }
+}
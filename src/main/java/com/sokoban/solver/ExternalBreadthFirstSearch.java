@@ -0,0 +1,437 @@
+package com.sokoban.solver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.DeadlockDetector;
+import com.sokoban.model.Direction;
+import com.sokoban.model.LevelData;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 外存广度优先穷举，用于统计关卡的最少推动次数和最优解数量
+ * 每一层（相同推动次数的全部局面）按局面排序后写入一个层文件，读取时用内存映射按窗口顺序访问。
+ * 生成下一层时，子局面先在内存缓冲区中排序、合并成有序的临时文件，
+ * 再与这些临时文件以及之前所有层文件做多路归并：同层重复的局面合并计数，
+ * 在之前层中出现过的局面丢弃（延迟重复检测），不需要内存中的哈希表。
+ * 内存占用只有排序缓冲区和每个文件一个映射窗口，状态空间大小只受磁盘限制。
+ *
+ * 每条记录为打包后的局面加一个计数，计数是从初始局面到该局面的最短推动序列数，
+ * 合并同层重复局面时相加，因此第一层出现的目标局面计数之和就是最优解的数量。
+ * 剪枝规则与 BreadthFirstSearch 相同：不推入静态死格，不产生冻结死锁
+ */
+public class ExternalBreadthFirstSearch implements Direction {
+    private static final long WINDOW_BYTES = 64L << 20;  // 内存映射窗口大小
+    private static final int WRITE_BUFFER = 1 << 20;     // 写文件缓冲区大小
+
+    private final int level;
+    private final MapLayout layout;
+    private final BoardState start;
+    private final int stride;     // 局面占用的 long 个数
+    private final int recLongs;   // 每条记录的 long 个数（局面 + 计数）
+
+    private Path workDir = null;                 // 层文件目录，null 表示使用系统临时目录
+    private long sortBufferBytes = 64L << 20;    // 排序缓冲区大小
+    private long timeLimitMillis = 3_600_000L;   // 时间上限，每层结束时检查
+    private boolean stopAtSolution = true;       // 找到最优层后是否停止
+
+    private long diskBytes, peakDiskBytes;
+    private long[] buffer;         // 排序缓冲区，每次穷举分配一次
+    private int[] order, temp;     // 缓冲区内记录的排序编号
+
+    /**
+     * 根据关卡数据创建穷举器
+     * @param data 关卡数据
+     */
+    public ExternalBreadthFirstSearch(LevelData data) {
+        this.level = data.level;
+        this.layout = data.map.getLayout();
+        this.start = data.newState();
+        this.stride = BoardState.packedLength(layout);
+        this.recLongs = stride + 1;
+    }
+
+    public ExternalBreadthFirstSearch setWorkDir(Path workDir) {
+        this.workDir = workDir;
+        return this;
+    }
+
+    public ExternalBreadthFirstSearch setSortBufferBytes(long sortBufferBytes) {
+        this.sortBufferBytes = sortBufferBytes;
+        return this;
+    }
+
+    public ExternalBreadthFirstSearch setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+        return this;
+    }
+
+    /**
+     * 设置找到最优层后是否停止
+     * @param stopAtSolution true 时在第一个含目标局面的层停止；false 时枚举整个可达状态空间
+     * @return 穷举器本身
+     */
+    public ExternalBreadthFirstSearch setStopAtSolution(boolean stopAtSolution) {
+        this.stopAtSolution = stopAtSolution;
+        return this;
+    }
+
+    /**
+     * 执行穷举，结束后删除所有层文件
+     * @return 穷举结果
+     * @throws IOException 层文件读写异常
+     */
+    public EnumerationResult enumerate() throws IOException {
+        long begin = System.nanoTime();
+        long deadline = begin + timeLimitMillis * 1_000_000L;
+        diskBytes = peakDiskBytes = 0;
+        if (start.getPlayer() < 0) {
+            return new EnumerationResult(level, EnumerationResult.Status.EXHAUSTED, -1, 0, 0, 0, 0, 0);
+        }
+
+        Path dir = workDir == null ? Files.createTempDirectory("sokoban-bfs")
+                : Files.createTempDirectory(workDir, "sokoban-bfs");
+        List<Path> layers = new ArrayList<>();
+        int capacity = (int) Math.max(1024, Math.min(sortBufferBytes / (recLongs * 8L), Integer.MAX_VALUE / recLongs));
+        buffer = new long[capacity * recLongs];
+        order = new int[capacity];
+        temp = new int[capacity];
+        try {
+            Reachability reach = new Reachability(layout);
+            BoardState state = new BoardState(start);
+            state.setPlayer(reach.fill(start.getPlayer(), state));
+            long[] record = new long[recLongs];
+            state.pack(record, 0);
+            record[stride] = 1;
+            Path first = dir.resolve("layer-0");
+            try (RecordWriter writer = new RecordWriter(first)) {
+                writer.write(record, 0);
+            }
+            layers.add(first);
+            long states = 1;
+            int optimal = state.isSolved() ? 0 : -1;
+            long solutions = optimal == 0 ? 1 : 0;
+            EnumerationResult.Status status = EnumerationResult.Status.EXHAUSTED;
+
+            while (!(optimal >= 0 && stopAtSolution)) {
+                if (System.nanoTime() > deadline) {
+                    status = EnumerationResult.Status.LIMIT;
+                    break;
+                }
+                int depth = layers.size();
+                List<Path> runs = expand(layers.get(depth - 1), dir, depth);
+                Path next = dir.resolve("layer-" + depth);
+                long[] found = merge(runs, layers, next);
+                for (Path run : runs) delete(run);
+                if (found[0] == 0) {
+                    delete(next);
+                    break;
+                }
+                layers.add(next);
+                states += found[0];
+                if (found[1] > 0 && optimal < 0) {
+                    optimal = depth;
+                    solutions = found[2];
+                }
+            }
+            if (optimal >= 0 && stopAtSolution) status = EnumerationResult.Status.SOLVED;
+            long elapsed = (System.nanoTime() - begin) / 1_000_000L;
+            return new EnumerationResult(level, status, optimal, solutions, states,
+                    layers.size(), peakDiskBytes, elapsed);
+        } finally {
+            buffer = null;
+            order = temp = null;
+            for (Path layer : layers) delete(layer);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * 展开一层的所有局面，子局面在缓冲区中排序去重后写成若干有序的临时文件
+     * @return 临时文件列表
+     */
+    private List<Path> expand(Path layer, Path dir, int depth) throws IOException {
+        Reachability reach = new Reachability(layout);
+        Reachability childReach = new Reachability(layout);
+        DeadlockDetector detector = new DeadlockDetector(layout);
+        BoardState state = new BoardState(layout);
+        int capacity = order.length;
+        int count = 0;
+        List<Path> runs = new ArrayList<>();
+        long[] record = new long[recLongs];
+
+        try (RecordReader reader = new RecordReader(layer, recLongs)) {
+            while (reader.next(record)) {
+                state.unpack(record, 0);
+                long paths = record[stride];
+                reach.fill(state.getPlayer(), state);
+                for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+                    for (int d = UP; d <= LEFT; d++) {
+                        int dest = layout.step(box, d);
+                        if (dest < 0 || state.hasBox(dest) || layout.isDead(dest)) continue;
+                        int behind = layout.step(box, MapLayout.opposite(d));
+                        if (behind < 0 || !reach.reached(behind)) continue;
+
+                        int player = state.getPlayer();
+                        state.moveBox(box, dest);
+                        if (!detector.isDeadlockAfterPush(state, dest)) {
+                            state.setPlayer(childReach.fill(box, state));
+                            if (count == capacity) {
+                                runs.add(writeRun(count, dir.resolve("run-" + depth + "-" + runs.size())));
+                                count = 0;
+                            }
+                            state.pack(buffer, count * recLongs);
+                            buffer[count * recLongs + stride] = paths;
+                            count++;
+                        }
+                        state.moveBox(dest, box);
+                        state.setPlayer(player);
+                    }
+                }
+            }
+        }
+        if (count > 0) {
+            runs.add(writeRun(count, dir.resolve("run-" + depth + "-" + runs.size())));
+        }
+        return runs;
+    }
+
+    /**
+     * 对缓冲区中的记录排序，合并相同局面的计数后写入临时文件
+     */
+    private Path writeRun(int count, Path file) throws IOException {
+        for (int i = 0; i < count; i++) order[i] = i;
+        sort(0, count);
+        try (RecordWriter writer = new RecordWriter(file)) {
+            long[] record = new long[recLongs];
+            System.arraycopy(buffer, order[0] * recLongs, record, 0, recLongs);
+            for (int i = 1; i < count; i++) {
+                int offset = order[i] * recLongs;
+                if (compare(record, 0, buffer, offset) == 0) {
+                    record[stride] = addPaths(record[stride], buffer[offset + stride]);
+                } else {
+                    writer.write(record, 0);
+                    System.arraycopy(buffer, offset, record, 0, recLongs);
+                }
+            }
+            writer.write(record, 0);
+        }
+        return file;
+    }
+
+    /**
+     * 归并排序记录编号，按局面比较
+     */
+    private void sort(int lo, int hi) {
+        if (hi - lo < 2) return;
+        int mid = (lo + hi) >>> 1;
+        sort(lo, mid);
+        sort(mid, hi);
+        if (compare(buffer, order[mid - 1] * recLongs, buffer, order[mid] * recLongs) <= 0) return;
+        System.arraycopy(order, lo, temp, lo, hi - lo);
+        int i = lo, j = mid;
+        for (int k = lo; k < hi; k++) {
+            if (j >= hi || (i < mid && compare(buffer, temp[i] * recLongs, buffer, temp[j] * recLongs) <= 0)) {
+                order[k] = temp[i++];
+            } else {
+                order[k] = temp[j++];
+            }
+        }
+    }
+
+    /**
+     * 多路归并临时文件得到下一层，丢弃在之前各层中出现过的局面
+     * @return {新层的局面数, 其中目标局面数, 目标局面的计数之和}
+     */
+    private long[] merge(List<Path> runs, List<Path> layers, Path next) throws IOException {
+        long[] found = new long[3];
+        List<RecordReader> inputs = new ArrayList<>();
+        List<RecordReader> previous = new ArrayList<>();
+        try (RecordWriter writer = new RecordWriter(next)) {
+            for (Path run : runs) inputs.add(new RecordReader(run, recLongs));
+            for (Path layer : layers) previous.add(new RecordReader(layer, recLongs));
+            long[][] heads = new long[inputs.size()][recLongs];
+            boolean[] alive = new boolean[inputs.size()];
+            for (int i = 0; i < heads.length; i++) alive[i] = inputs.get(i).next(heads[i]);
+            long[][] seen = new long[previous.size()][recLongs];
+            boolean[] seenAlive = new boolean[previous.size()];
+            for (int i = 0; i < seen.length; i++) seenAlive[i] = previous.get(i).next(seen[i]);
+
+            long[] record = new long[recLongs];
+            BoardState state = new BoardState(layout);
+            while (true) {
+                // 取出最小局面，并合并所有临时文件中相同局面的计数
+                int min = -1;
+                for (int i = 0; i < heads.length; i++) {
+                    if (alive[i] && (min < 0 || compare(heads[i], 0, heads[min], 0) < 0)) min = i;
+                }
+                if (min < 0) break;
+                System.arraycopy(heads[min], 0, record, 0, recLongs);
+                record[stride] = 0;
+                for (int i = 0; i < heads.length; i++) {
+                    while (alive[i] && compare(heads[i], 0, record, 0) == 0) {
+                        record[stride] = addPaths(record[stride], heads[i][stride]);
+                        alive[i] = inputs.get(i).next(heads[i]);
+                    }
+                }
+                if (seenBefore(record, previous, seen, seenAlive)) continue;
+                writer.write(record, 0);
+                found[0]++;
+                state.unpack(record, 0);
+                if (state.isSolved()) {
+                    found[1]++;
+                    found[2] = addPaths(found[2], record[stride]);
+                }
+            }
+        } finally {
+            for (RecordReader reader : inputs) reader.close();
+            for (RecordReader reader : previous) reader.close();
+        }
+        return found;
+    }
+
+    /**
+     * 推进之前各层的读取位置，判断局面是否已经出现过
+     * 候选局面按升序到来，每个层文件只需要顺序扫描一遍
+     */
+    private boolean seenBefore(long[] record, List<RecordReader> previous, long[][] seen, boolean[] alive)
+            throws IOException {
+        for (int i = 0; i < seen.length; i++) {
+            int c;
+            while (alive[i] && (c = compare(seen[i], 0, record, 0)) <= 0) {
+                if (c == 0) return true;
+                alive[i] = previous.get(i).next(seen[i]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按局面部分（不含计数）比较两条记录
+     */
+    private int compare(long[] a, int aOffset, long[] b, int bOffset) {
+        for (int i = 0; i < stride; i++) {
+            int c = Long.compare(a[aOffset + i], b[bOffset + i]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    private static long addPaths(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;  // 超出范围时饱和
+    }
+
+    private void delete(Path file) throws IOException {
+        if (Files.exists(file)) {
+            diskBytes -= Files.size(file);
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * 顺序写入记录的文件
+     */
+    private final class RecordWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.nativeOrder());
+
+        RecordWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        void write(long[] record, int offset) throws IOException {
+            if (out.remaining() < recLongs * 8) flush();
+            for (int i = 0; i < recLongs; i++) {
+                out.putLong(record[offset + i]);
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            diskBytes += out.remaining();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.clear();
+            peakDiskBytes = Math.max(peakDiskBytes, diskBytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 通过内存映射窗口顺序读取记录的文件
+     */
+    private static final class RecordReader implements AutoCloseable {
+        private final FileChannel channel;
+        private final long size;
+        private final long window;   // 窗口大小，取记录长度的整数倍
+        private MappedByteBuffer mapped;
+        private long position;       // 下一个窗口在文件中的起始位置
+
+        RecordReader(Path file, int recLongs) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+            long recBytes = recLongs * 8L;
+            window = Math.max(1, WINDOW_BYTES / recBytes) * recBytes;
+        }
+
+        boolean next(long[] record) throws IOException {
+            if (mapped == null || !mapped.hasRemaining()) {
+                if (position >= size) return false;
+                long length = Math.min(window, size - position);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                mapped.order(ByteOrder.nativeOrder());
+                position += length;
+            }
+            for (int i = 0; i < record.length; i++) {
+                record[i] = mapped.getLong();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mapped = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * 命令行入口
+     * 用法：java -cp target/classes com.sokoban.solver.ExternalBreadthFirstSearch [起始关卡] [结束关卡] [单关时限秒] [all]
+     * 最后一个参数为 all 时枚举整个可达状态空间，否则在最优层停止
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int from = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int to = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 3600;
+        boolean all = args.length > 3 && "all".equalsIgnoreCase(args[3]);
+        for (int level = from; level <= to; level++) {
+            EnumerationResult result = new ExternalBreadthFirstSearch(LevelData.load(level))
+                    .setTimeLimitMillis(seconds * 1000)
+                    .setStopAtSolution(!all)
+                    .enumerate();
+            System.out.println(result);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sokoban.solver;
+
+import java.util.Arrays;
+
+import com.sokoban.model.BoardState;
+
+/**
+ * 堆内节点存储，所有节点按编号顺序保存在基本类型数组中
+ * 不为每个节点创建对象，容量不足时按 1.5 倍扩容
+ */
+public final class HeapNodeStore implements NodeStore {
+    private final int stride;   // 每个节点的局面占用的 long 个数
+    private long[] states;
+    private int[] parents;
+    private int[] moves;
+    private int size;
+
+    /**
+     * 创建节点存储
+     * @param stride 每个局面的 long 个数，即 BoardState.packedLength
+     * @param initialCapacity 初始容量
+     */
+    public HeapNodeStore(int stride, int initialCapacity) {
+        this.stride = stride;
+        int capacity = Math.max(initialCapacity, 16);
+        states = new long[capacity * stride];
+        parents = new int[capacity];
+        moves = new int[capacity];
+    }
+
+    @Override
+    public int add(BoardState state, int parent, int move) {
+        if (size == parents.length) grow();
+        state.pack(states, size * stride);
+        parents[size] = parent;
+        moves[size] = move;
+        return size++;
+    }
+
+    @Override
+    public void load(int node, BoardState state) {
+        state.unpack(states, node * stride);
+    }
+
+    @Override
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    @Override
+    public int move(int node) {
+        return moves[node];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytes() {
+        return (long) parents.length * (stride * 8L + 8);
+    }
+
+    private void grow() {
+        int capacity = parents.length + (parents.length >> 1);
+        if (capacity < 0 || (long) capacity * stride > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("节点数量超出数组容量");
+        }
+        states = Arrays.copyOf(states, capacity * stride);
+        parents = Arrays.copyOf(parents, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+    }
+}
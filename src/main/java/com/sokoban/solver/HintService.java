@@ -0,0 +1,190 @@
+package com.sokoban.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.Direction;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 游戏内提示服务，在后台线程为当前局面求出下一次推动
+ * 每次求解有固定的时间预算，使用带宏移动的 A* 搜索尽快得到一个解。
+ * 找到解后沿解法重放，把途经每个局面的下一次推动都放入缓存，
+ * 玩家按提示继续推时后续提示直接命中缓存，无需再次搜索。
+ * 新的请求或 cancel 会取消尚未完成的搜索，旧请求的结果不再回调。
+ * 本类不依赖 Swing，回调在后台线程执行，界面需要自行切换到事件分发线程
+ */
+public class HintService implements Direction {
+    /**
+     * 默认的单次求解时间预算（毫秒）
+     */
+    public static final long DEFAULT_BUDGET_MILLIS = 200;
+    private static final int CACHE_SIZE = 4096;  // 缓存的局面数上限
+
+    /**
+     * 提示结果
+     */
+    public static final class Hint {
+        public final SolverResult.Status status;  // SOLVED 时给出下一次推动；UNSOLVABLE 表示当前局面无解；LIMIT 表示预算内未找到
+        public final int boxX, boxY;              // 要推的箱子坐标
+        public final int direction;               // 推动方向
+        public final int pushesLeft;              // 按此解法还需推动的次数
+
+        private Hint(SolverResult.Status status, int boxX, int boxY, int direction, int pushesLeft) {
+            this.status = status;
+            this.boxX = boxX;
+            this.boxY = boxY;
+            this.direction = direction;
+            this.pushesLeft = pushesLeft;
+        }
+
+        private static Hint of(SolverResult.Status status) {
+            return new Hint(status, -1, -1, 0, 0);
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sokoban-hint");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long budgetMillis;
+
+    // 以下字段只在后台线程中访问
+    private final Map<BoardState, Hint> cache = new LinkedHashMap<BoardState, Hint>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BoardState, Hint> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private int cachedLevel = -1;       // 缓存所属的关卡编号，重玩同一关时缓存继续有效
+    private int cachedSize = -1;        // 缓存所属地图的格子总数
+    private Reachability reach;
+
+    private volatile long generation;   // 请求代数，每次请求或取消时递增
+    private volatile Solver running;    // 正在运行的求解器
+
+    public HintService() {
+        this(DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * @param budgetMillis 单次求解的时间预算（毫秒）
+     */
+    public HintService(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * 请求当前局面的提示，立即返回，不阻塞调用线程
+     * 之前尚未完成的请求会被取消且不再回调
+     * @param level 关卡编号，用于区分缓存
+     * @param state 当前局面，男孩位置为真实坐标；调用后可以继续修改，服务持有其副本
+     * @param callback 得到结果后在后台线程调用
+     */
+    public void request(int level, BoardState state, Consumer<Hint> callback) {
+        BoardState snapshot = new BoardState(state);
+        long id = cancel();
+        executor.execute(() -> {
+            if (generation != id) return;
+            Hint hint = compute(level, snapshot, id);
+            if (hint != null && generation == id) callback.accept(hint);
+        });
+    }
+
+    /**
+     * 取消尚未完成的请求，例如玩家又移动了一步
+     * @return 取消后的请求代数
+     */
+    public long cancel() {
+        long id = ++generation;
+        Solver solver = running;
+        if (solver != null) solver.cancel();
+        return id;
+    }
+
+    private Hint compute(int level, BoardState state, long id) {
+        MapLayout layout = state.getLayout();
+        if (level != cachedLevel || layout.size != cachedSize) {
+            cache.clear();
+            cachedLevel = level;
+            cachedSize = layout.size;
+            reach = new Reachability(layout);
+        }
+        BoardState key = normalize(state);
+        Hint hint = cache.get(key);
+        if (hint != null) return hint;
+
+        Solver solver = new Solver(level, state)
+                .setMode(Solver.Mode.ASTAR)
+                .setMacroMoves(true)
+                .setTimeLimitMillis(budgetMillis)
+                .setTableEntries(1 << 16);
+        running = solver;
+        if (generation != id) solver.cancel();
+        SolverResult result = solver.solve();
+        running = null;
+        if (generation != id) return null;
+
+        switch (result.status) {
+            case SOLVED:
+                remember(state, result.solution);
+                hint = cache.get(key);
+                return hint != null ? hint : Hint.of(SolverResult.Status.SOLVED);
+            case UNSOLVABLE:
+                hint = Hint.of(SolverResult.Status.UNSOLVABLE);
+                cache.put(key, hint);
+                return hint;
+            default:
+                return Hint.of(SolverResult.Status.LIMIT);
+        }
+    }
+
+    /**
+     * 沿解法重放，记录途经的每个推动前局面的下一次推动
+     */
+    private void remember(BoardState start, String solution) {
+        MapLayout layout = start.getLayout();
+        BoardState state = new BoardState(start);
+        int pushes = 0;
+        for (int i = 0; i < solution.length(); i++) {
+            if (Character.isUpperCase(solution.charAt(i))) pushes++;
+        }
+        for (int i = 0; i < solution.length(); i++) {
+            char c = solution.charAt(i);
+            int direction = direction(c);
+            if (Character.isUpperCase(c)) {
+                int box = layout.step(state.getPlayer(), direction);
+                cache.put(normalize(state), new Hint(SolverResult.Status.SOLVED,
+                        layout.x(box), layout.y(box), direction, pushes--));
+            }
+            state.move(direction);
+        }
+    }
+
+    /**
+     * 复制局面并把男孩位置标准化为可达区域中最小的格子
+     */
+    private BoardState normalize(BoardState state) {
+        BoardState key = new BoardState(state);
+        key.setPlayer(reach.fill(state.getPlayer(), state));
+        return key;
+    }
+
+    private static int direction(char c) {
+        switch (Character.toLowerCase(c)) {
+            case 'u':
+                return UP;
+            case 'r':
+                return RIGHT;
+            case 'd':
+                return DOWN;
+            default:
+                return LEFT;
+        }
+    }
+}
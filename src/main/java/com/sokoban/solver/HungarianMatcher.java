@@ -0,0 +1,170 @@
+package com.sokoban.solver;
+
+import java.util.Arrays;
+
+/**
+ * 箱子与目标点之间的最小代价完美匹配（匈牙利算法，带势能的最短增广路实现）
+ * 行是箱子，列是目标点，代价是推动距离。匹配总代价是剩余推动次数的下界。
+ *
+ * 目标点多于箱子时补上代价为 0 的虚拟行，使问题成为方阵，每一列最终都被匹配。
+ *
+ * 支持增量更新：只有一个箱子移动时，撤销它所在行的匹配，重算这一行的代价，
+ * 再做一次增广即可得到新的最优匹配，代价 O(n * m)，而不是完整重算的 O(n * n * m)。
+ * 方阵中完美匹配的各边都满足势能等式、势能可行，即可证明匹配最优，与空出的那一列的势能无关，
+ * 因此增量结果与完整重算一致。若不补虚拟行，空闲列的势能必须为 0，撤销匹配后的列不满足这一条件。
+ * 所有数组在构造时分配，匹配过程中不分配对象
+ */
+public final class HungarianMatcher {
+    private final PushDistances distances;
+    private final int rows, cols;  // 箱子数、目标点数；第 rows+1 到 cols 行是虚拟行
+    private final int[] cost;      // cost[(行-1) * cols + (列-1)]，虚拟行的代价总是 0
+    // 以下数组下标从 1 开始，0 号为算法使用的虚拟行/列
+    private final int[] u, v;      // 行势能、列势能
+    private final int[] p;         // p[列] = 匹配到该列的行，0 表示空闲
+    private final int[] way, minv;
+    private final boolean[] used;
+    // 保存点，用于在同一个父节点下多次增量计算
+    private final int[] savedU, savedV, savedP, savedCost;
+
+    /**
+     * 创建匹配器
+     * @param distances 推动距离表
+     * @param rows 箱子数量
+     * @param cols 目标点数量，必须不少于箱子数量
+     */
+    public HungarianMatcher(PushDistances distances, int rows, int cols) {
+        this.distances = distances;
+        this.rows = rows;
+        this.cols = cols;
+        this.cost = new int[cols * cols];
+        this.u = new int[cols + 1];
+        this.v = new int[cols + 1];
+        this.p = new int[cols + 1];
+        this.way = new int[cols + 1];
+        this.minv = new int[cols + 1];
+        this.used = new boolean[cols + 1];
+        this.savedU = new int[cols + 1];
+        this.savedV = new int[cols + 1];
+        this.savedP = new int[cols + 1];
+        this.savedCost = new int[rows * cols];
+    }
+
+    /**
+     * 从头计算匹配
+     * @param boxCells 每一行箱子所在的格子
+     * @return 最小匹配代价，有箱子无法到达任何空闲目标点时返回 PushDistances.INFINITE
+     */
+    public int match(int[] boxCells) {
+        Arrays.fill(u, 0);
+        Arrays.fill(v, 0);
+        Arrays.fill(p, 0);
+        for (int r = 0; r < rows; r++) {
+            setRowCost(r, boxCells[r]);
+        }
+        for (int r = 1; r <= cols; r++) {
+            augment(r);
+        }
+        return total();
+    }
+
+    /**
+     * 某一行的箱子移动到新格子后，增量更新匹配
+     * @param row 行号（从 0 开始）
+     * @param cell 箱子的新格子
+     * @return 新的最小匹配代价
+     */
+    public int update(int row, int cell) {
+        int r = row + 1;
+        for (int j = 1; j <= cols; j++) {
+            if (p[j] == r) {
+                p[j] = 0;
+                break;
+            }
+        }
+        setRowCost(row, cell);
+        // 列势能始终不大于 0，代价不小于 0，行势能置 0 即可保持可行
+        u[r] = 0;
+        augment(r);
+        return total();
+    }
+
+    /**
+     * 保存当前匹配，之后可用 restore 恢复
+     */
+    public void save() {
+        System.arraycopy(u, 0, savedU, 0, u.length);
+        System.arraycopy(v, 0, savedV, 0, v.length);
+        System.arraycopy(p, 0, savedP, 0, p.length);
+        System.arraycopy(cost, 0, savedCost, 0, savedCost.length);
+    }
+
+    /**
+     * 恢复到最近一次 save 时的匹配
+     */
+    public void restore() {
+        System.arraycopy(savedU, 0, u, 0, u.length);
+        System.arraycopy(savedV, 0, v, 0, v.length);
+        System.arraycopy(savedP, 0, p, 0, p.length);
+        System.arraycopy(savedCost, 0, cost, 0, savedCost.length);
+    }
+
+    private void setRowCost(int row, int cell) {
+        int base = row * cols;
+        for (int t = 0; t < cols; t++) {
+            cost[base + t] = distances.get(t, cell);
+        }
+    }
+
+    /**
+     * 为第 r 行寻找最短增广路（Dijkstra），并沿路径调整势能和匹配
+     */
+    private void augment(int r) {
+        p[0] = r;
+        int j0 = 0;
+        Arrays.fill(minv, Integer.MAX_VALUE);
+        Arrays.fill(used, false);
+        do {
+            used[j0] = true;
+            int i0 = p[j0];
+            int delta = Integer.MAX_VALUE;
+            int j1 = 0;
+            int base = (i0 - 1) * cols - 1;
+            for (int j = 1; j <= cols; j++) {
+                if (used[j]) continue;
+                int cur = cost[base + j] - u[i0] - v[j];
+                if (cur < minv[j]) {
+                    minv[j] = cur;
+                    way[j] = j0;
+                }
+                if (minv[j] < delta) {
+                    delta = minv[j];
+                    j1 = j;
+                }
+            }
+            for (int j = 0; j <= cols; j++) {
+                if (used[j]) {
+                    u[p[j]] += delta;
+                    v[j] -= delta;
+                } else {
+                    minv[j] -= delta;
+                }
+            }
+            j0 = j1;
+        } while (p[j0] != 0);
+        do {
+            int j1 = way[j0];
+            p[j0] = p[j1];
+            j0 = j1;
+        } while (j0 != 0);
+    }
+
+    private int total() {
+        int sum = 0;
+        for (int j = 1; j <= cols; j++) {
+            if (p[j] != 0 && p[j] <= rows) {
+                sum += cost[(p[j] - 1) * cols + j - 1];
+            }
+        }
+        return Math.min(sum, PushDistances.INFINITE);
+    }
+}
@@ -0,0 +1,404 @@
+package com.sokoban.solver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.Direction;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 宏移动：把没有实际选择的一串推动合并成搜索中的一步
+ *
+ * 隧道宏：箱子被推进宽度为 1 的隧道（箱子和男孩所在格子两侧都是墙，且不是目标点）后，
+ * 男孩无法绕到箱子另一侧，停在隧道中间没有意义，直接沿原方向推到隧道出口。
+ *
+ * 目标房间宏：目标房间是只能经过一个入口格子进出、包含目标点、初始时没有箱子和男孩的区域。
+ * 箱子数等于目标点数时，每个房间最终都要被填满，构造时为每个房间预先确定填充顺序（离入口最远的优先），
+ * 并验证每一步都能把入口处的箱子推到对应目标点。搜索中箱子被推到入口并朝向房间时，
+ * 如果房间里的箱子恰好是填充顺序的前 k 个，就直接把它推到第 k 个目标点，中间的推动作为一个宏整体展开。
+ *
+ * 宏移动保持关卡的可解性，但可能错过个别需要把箱子停在隧道中或房间中途的更短解，
+ * 因此使用宏移动时不保证推动次数最少。
+ *
+ * 宏在节点中的推动编码：低 moveBits 位为第一次推动（NodeStore.encodeMove），位数由地图格子数决定；
+ * 隧道宏在其上记录沿同一方向额外推动的次数；目标房间宏置 GOAL_FLAG，并在其上记录
+ * 房间序号 * 1024 + k（见 goalRoomFill 的返回值）。
+ * 附加内容放不下时不使用对应的宏（隧道宏截短），地图大到连一个房间都放不下时整体不使用宏，见 fits
+ */
+final class MacroMoves implements Direction {
+    private static final int GOAL_FLAG = 1 << 30;
+
+    private static final int FILL_BITS = 10;  // 填充序号 k 占用的位数
+
+    /**
+     * 一个目标房间及其预先验证的填充方案
+     */
+    private static final class GoalRoom {
+        int index;          // 在 rooms 中的序号
+        int entrance;       // 入口格子
+        int direction;      // 从入口进入房间的方向
+        boolean[] cells;    // 房间内的格子（不含入口）
+        int[] order;        // 目标点的填充顺序
+        int[][] pushes;     // 第 k 个箱子从入口推到目标点的推动序列
+        int[] players;      // 第 k 个箱子推到位后男孩所在格子
+    }
+
+    private final MapLayout layout;
+    private final int moveBits;       // 单次推动编码占用的位数
+    private final int moveMask;
+    private final int maxPayload;     // 第 moveBits 位到 GOAL_FLAG 之间能记录的最大值
+    private final List<GoalRoom> rooms = new ArrayList<>();
+    private final GoalRoom[] roomAt;  // 以入口格子为下标的目标房间
+
+    MacroMoves(MapLayout layout, BoardState start) {
+        this.layout = layout;
+        this.moveBits = moveBits(layout);
+        this.moveMask = (1 << moveBits) - 1;
+        this.maxPayload = (GOAL_FLAG >>> moveBits) - 1;
+        this.roomAt = new GoalRoom[layout.size];
+        if (start.getBoxCount() == layout.getTargetCount() && layout.getTargetCount() > 0) {
+            findGoalRooms(start);
+        }
+    }
+
+    /**
+     * 宏的编码能否容纳该地图的推动编码和至少一个目标房间
+     * @param layout 地图布局
+     * @return 不能容纳时不应使用宏移动
+     */
+    static boolean fits(MapLayout layout) {
+        return moveBits(layout) + FILL_BITS < 30;
+    }
+
+    private static int moveBits(MapLayout layout) {
+        return Math.max(2, 32 - Integer.numberOfLeadingZeros(layout.size * 4 - 1));
+    }
+
+    /**
+     * 箱子沿 direction 推到 dest 后，隧道宏还会沿同一方向继续推动的次数
+     * @param state 局面，箱子已位于 dest
+     * @param dest 箱子当前所在格子
+     * @param direction 推动方向
+     * @return 额外推动次数，不构成隧道时为 0
+     */
+    int tunnelPushes(BoardState state, int dest, int direction) {
+        int box = dest, n = 0;
+        while (n < maxPayload && isTunnel(box, direction) && isTunnel(layout.step(box, MapLayout.opposite(direction)), direction)) {
+            int next = layout.step(box, direction);
+            if (next < 0 || state.hasBox(next) || layout.isDead(next)) break;
+            box = next;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 判断箱子沿 direction 推到 dest 后能否触发目标房间宏
+     * @param state 局面，箱子已位于 dest
+     * @return 房间序号 * 1024 + 填充序号 k，不能触发时返回 -1
+     */
+    int goalRoomFill(BoardState state, int dest, int direction) {
+        GoalRoom room = roomAt[dest];
+        if (room == null || direction != room.direction) return -1;
+        int k = 0;
+        while (k < room.order.length && state.hasBox(room.order[k])) k++;
+        if (k == room.order.length) return -1;
+        // 房间中其余格子必须没有箱子，才能保证预先验证的推动路线可用
+        for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+            if (room.cells[box] && !isFilled(room, box, k)) return -1;
+        }
+        int fill = (room.index << FILL_BITS) | k;
+        return fill <= maxPayload ? fill : -1;
+    }
+
+    private static boolean isFilled(GoalRoom room, int cell, int k) {
+        for (int i = 0; i < k; i++) {
+            if (room.order[i] == cell) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 目标房间宏结束时箱子所在的目标点
+     * @param fill goalRoomFill 的返回值
+     */
+    int fillTarget(int fill) {
+        return rooms.get(fill >>> FILL_BITS).order[fill & ((1 << FILL_BITS) - 1)];
+    }
+
+    /**
+     * 目标房间宏结束时男孩所在格子
+     * @param fill goalRoomFill 的返回值
+     */
+    int fillPlayer(int fill) {
+        return rooms.get(fill >>> FILL_BITS).players[fill & ((1 << FILL_BITS) - 1)];
+    }
+
+    /**
+     * 目标房间宏包含的推动次数（不含推到入口的那一次）
+     * @param fill goalRoomFill 的返回值
+     */
+    int fillCost(int fill) {
+        return fillPushes(fill).length;
+    }
+
+    private int[] fillPushes(int fill) {
+        return rooms.get(fill >>> FILL_BITS).pushes[fill & ((1 << FILL_BITS) - 1)];
+    }
+
+    int encodeTunnel(int move, int extra) {
+        return move | (extra << moveBits);
+    }
+
+    int encodeGoal(int move, int fill) {
+        return move | GOAL_FLAG | (fill << moveBits);
+    }
+
+    /**
+     * 把含有宏的推动序列展开为逐次推动
+     * @param path 推动编码序列
+     * @return 只包含单次推动的序列
+     */
+    int[] expand(int[] path) {
+        int length = 0;
+        for (int move : path) length += 1 + extra(move);
+        int[] pushes = new int[length];
+        int i = 0;
+        for (int move : path) {
+            int first = move & moveMask;
+            pushes[i++] = first;
+            if ((move & GOAL_FLAG) != 0) {
+                int[] fill = fillPushes((move & ~GOAL_FLAG) >>> moveBits);
+                System.arraycopy(fill, 0, pushes, i, fill.length);
+                i += fill.length;
+            } else {
+                int d = NodeStore.moveDirection(first);
+                int box = layout.step(NodeStore.moveBox(first), d);
+                for (int n = move >>> moveBits; n > 0; n--) {
+                    pushes[i++] = NodeStore.encodeMove(box, d);
+                    box = layout.step(box, d);
+                }
+            }
+        }
+        return pushes;
+    }
+
+    private int extra(int move) {
+        if ((move & GOAL_FLAG) != 0) return fillPushes((move & ~GOAL_FLAG) >>> moveBits).length;
+        return move >>> moveBits;
+    }
+
+    /**
+     * 格子是否是沿 direction 方向的单宽隧道：可行走、不是目标点、两侧都是墙
+     */
+    private boolean isTunnel(int cell, int direction) {
+        if (cell < 0 || layout.isTarget(cell)) return false;
+        int side = direction % 4 + 1;  // 与 direction 垂直的方向
+        return layout.step(cell, side) < 0 && layout.step(cell, MapLayout.opposite(side)) < 0;
+    }
+
+    /**
+     * 寻找所有目标房间
+     * 对每个可能的入口和进入方向求出入口之后的区域，验证通过的区域按从大到小选取，互不重叠
+     */
+    private void findGoalRooms(BoardState start) {
+        List<GoalRoom> candidates = new ArrayList<>();
+        int[] queue = new int[layout.size];
+        for (int e = 0; e < layout.size; e++) {
+            if (!layout.isFloor(e) || layout.isTarget(e) || start.hasBox(e) || e == start.getPlayer()) continue;
+            for (int d = UP; d <= LEFT; d++) {
+                int inside = layout.step(e, d);
+                if (inside < 0 || layout.step(e, MapLayout.opposite(d)) < 0) continue;
+                // 去掉入口后，从 inside 出发能走到的区域
+                boolean[] cells = new boolean[layout.size];
+                int head = 0, tail = 0;
+                queue[tail++] = inside;
+                cells[inside] = true;
+                while (head < tail) {
+                    int cur = queue[head++];
+                    for (int n = UP; n <= LEFT; n++) {
+                        int next = layout.step(cur, n);
+                        if (next >= 0 && next != e && !cells[next]) {
+                            cells[next] = true;
+                            queue[tail++] = next;
+                        }
+                    }
+                }
+                if (!isGoalRoom(cells, start, e, d)) continue;
+                GoalRoom room = planFill(cells, e, d);
+                if (room != null) candidates.add(room);
+            }
+        }
+        candidates.sort((a, b) -> count(b.cells) - count(a.cells));
+        for (GoalRoom room : candidates) {
+            if (overlaps(room)) continue;
+            room.index = rooms.size();
+            rooms.add(room);
+            roomAt[room.entrance] = room;
+        }
+    }
+
+    /**
+     * 区域必须包含目标点，不包含初始的箱子、男孩和入口外侧格子，且入口只有一个相邻格子在区域内
+     */
+    private boolean isGoalRoom(boolean[] cells, BoardState start, int e, int d) {
+        if (cells[layout.step(e, MapLayout.opposite(d))] || cells[start.getPlayer()]) return false;
+        boolean hasTarget = false;
+        for (int t = 0; t < layout.getTargetCount(); t++) {
+            hasTarget |= cells[layout.getTarget(t)];
+        }
+        if (!hasTarget) return false;
+        for (int box = start.nextBox(0); box >= 0; box = start.nextBox(box + 1)) {
+            if (cells[box]) return false;
+        }
+        for (int n = UP; n <= LEFT; n++) {
+            int next = layout.step(e, n);
+            if (n != d && next >= 0 && cells[next]) return false;
+        }
+        return true;
+    }
+
+    private boolean overlaps(GoalRoom room) {
+        for (GoalRoom other : rooms) {
+            if (room.cells[other.entrance] || other.cells[room.entrance] || room.entrance == other.entrance) return true;
+            for (int i = 0; i < layout.size; i++) {
+                if (room.cells[i] && other.cells[i]) return true;
+            }
+        }
+        return false;
+    }
+
+    private static int count(boolean[] cells) {
+        int n = 0;
+        for (boolean c : cells) {
+            if (c) n++;
+        }
+        return n;
+    }
+
+    /**
+     * 确定填充顺序：每一步在尚未填充的目标点中选离入口最远、且能从入口推过去的一个
+     * @return 房间内所有目标点都能依次填充时返回房间，否则返回 null
+     */
+    private GoalRoom planFill(boolean[] cells, int e, int d) {
+        int[] distance = distances(cells, e);
+        List<Integer> targets = new ArrayList<>();
+        for (int t = 0; t < layout.getTargetCount(); t++) {
+            if (cells[layout.getTarget(t)]) targets.add(layout.getTarget(t));
+        }
+        targets.sort((a, b) -> distance[b] - distance[a]);
+        int count = targets.size();
+        if (count >= 1 << FILL_BITS) return null;
+
+        GoalRoom room = new GoalRoom();
+        room.entrance = e;
+        room.direction = d;
+        room.cells = cells;
+        room.order = new int[count];
+        room.pushes = new int[count][];
+        room.players = new int[count];
+        boolean[] used = new boolean[layout.size];
+        // 房间外除入口和入口外侧以外的格子都当作障碍，男孩在推动过程中只能在房间里走动
+        BoardState state = new BoardState(layout);
+        int outside = layout.step(e, MapLayout.opposite(d));
+        for (int cell = 0; cell < layout.size; cell++) {
+            if (layout.isFloor(cell) && !cells[cell] && cell != e && cell != outside) state.addBox(cell);
+        }
+        Reachability reach = new Reachability(layout);
+        for (int k = 0; k < count; k++) {
+            boolean placed = false;
+            for (int target : targets) {
+                if (used[target]) continue;
+                int[] player = new int[1];
+                int[] path = pushPath(state, reach, cells, e, MapLayout.opposite(d), target, player);
+                if (path == null) continue;
+                room.order[k] = target;
+                room.pushes[k] = path;
+                room.players[k] = player[0];
+                used[target] = true;
+                state.addBox(target);
+                placed = true;
+                break;
+            }
+            if (!placed) return null;
+        }
+        return room;
+    }
+
+    /**
+     * 房间内各格子到入口的步行距离
+     */
+    private int[] distances(boolean[] cells, int e) {
+        int[] distance = new int[layout.size];
+        Arrays.fill(distance, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        distance[e] = 0;
+        queue.add(e);
+        while (!queue.isEmpty()) {
+            int cur = queue.poll();
+            for (int d = UP; d <= LEFT; d++) {
+                int next = layout.step(cur, d);
+                if (next >= 0 && cells[next] && distance[next] < 0) {
+                    distance[next] = distance[cur] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * 单个箱子的推动路径搜索，其他箱子视为障碍
+     * 搜索节点为 (箱子格子, 男孩在箱子哪一侧)，每次推动后男孩位于箱子原来的格子
+     * @param state 其他箱子所在的局面
+     * @param cells 箱子允许进入的格子
+     * @param from 箱子起点
+     * @param side 男孩起始时位于箱子的哪一侧
+     * @param to 箱子终点
+     * @param player 输出：推到终点后男孩所在格子
+     * @return 推动编码序列，不可达时返回 null
+     */
+    private int[] pushPath(BoardState state, Reachability reach, boolean[] cells, int from, int side, int to,
+                           int[] player) {
+        int[] parent = new int[layout.size * 4];
+        Arrays.fill(parent, -2);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int startNode = from * 4 + side - 1;
+        parent[startNode] = -1;
+        queue.add(startNode);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int box = node >> 2;
+            if (box == to) return tracePath(parent, node, player);
+            state.addBox(box);
+            reach.fill(layout.step(box, (node & 3) + 1), state);
+            for (int d = UP; d <= LEFT; d++) {
+                int dest = layout.step(box, d);
+                int behind = layout.step(box, MapLayout.opposite(d));
+                if (dest < 0 || behind < 0 || !cells[dest] || state.hasBox(dest) || !reach.reached(behind)) continue;
+                int next = dest * 4 + MapLayout.opposite(d) - 1;
+                if (parent[next] != -2) continue;
+                parent[next] = node;
+                queue.add(next);
+            }
+            state.removeBox(box);
+        }
+        return null;
+    }
+
+    private int[] tracePath(int[] parent, int node, int[] player) {
+        int length = 0;
+        for (int n = node; parent[n] >= 0; n = parent[n]) length++;
+        int[] path = new int[length];
+        player[0] = layout.step(node >> 2, (node & 3) + 1);
+        for (int n = node; parent[n] >= 0; n = parent[n]) {
+            int box = parent[n] >> 2;
+            int d = MapLayout.opposite((n & 3) + 1);
+            path[--length] = NodeStore.encodeMove(box, d);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,71 @@
+package com.sokoban.solver;
+
+import com.sokoban.model.BoardState;
+
+/**
+ * 搜索节点存储，所有节点按编号顺序保存
+ * 每个节点包含：打包后的局面、父节点编号、产生它的推动（箱子格子 * 4 + 方向 - 1）。
+ * 不为每个节点创建对象，也方便按编号顺序作为广度优先队列使用。
+ * 实现有堆内数组（HeapNodeStore）和堆外内存（OffHeapNodeStore）两种
+ */
+public interface NodeStore {
+
+    /**
+     * 追加一个节点
+     * @param state 局面，男孩位置应已标准化
+     * @param parent 父节点编号，根节点为 -1
+     * @param move 推动编码
+     * @return 新节点编号
+     */
+    int add(BoardState state, int parent, int move);
+
+    /**
+     * 把节点局面读入 BoardState
+     * @param node 节点编号
+     * @param state 目标局面
+     */
+    void load(int node, BoardState state);
+
+    int parent(int node);
+
+    int move(int node);
+
+    int size();
+
+    /**
+     * 估算占用的字节数
+     * @return 字节数
+     */
+    long bytes();
+
+    /**
+     * 从根节点到指定节点经过的推动序列
+     * @param node 节点编号
+     * @return 推动编码数组，按先后顺序排列
+     */
+    default int[] path(int node) {
+        int depth = 0;
+        for (int n = node; parent(n) >= 0; n = parent(n)) depth++;
+        int[] path = new int[depth];
+        for (int n = node; parent(n) >= 0; n = parent(n)) path[--depth] = move(n);
+        return path;
+    }
+
+    /**
+     * 编码一次推动
+     * @param box 推动前箱子所在格子
+     * @param direction 方向
+     * @return 推动编码
+     */
+    static int encodeMove(int box, int direction) {
+        return box * 4 + direction - 1;
+    }
+
+    static int moveBox(int move) {
+        return move >> 2;
+    }
+
+    static int moveDirection(int move) {
+        return (move & 3) + 1;
+    }
+}
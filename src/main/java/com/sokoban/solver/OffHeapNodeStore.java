@@ -0,0 +1,94 @@
+package com.sokoban.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.sokoban.model.BoardState;
+
+/**
+ * 堆外节点存储，节点保存在 ByteBuffer.allocateDirect 分配的定长分块中
+ * 每个节点占 stride * 8 + 8 字节：打包后的局面、父节点编号、推动编码。
+ * 分块一经分配不再复制，节点数量增长时只追加新块，堆上只有分块引用数组，
+ * 大规模搜索时垃圾回收不需要复制或扫描节点数据。最后一块只按剩余预算分配，总分配量不超过预算。
+ * 总容量在创建时按字节数给定，超出时抛出 OutOfMemoryError，由 Solver 记为达到上限。
+ * 直接内存还受 JVM 参数 -XX:MaxDirectMemorySize 限制
+ */
+public final class OffHeapNodeStore implements NodeStore {
+    private static final int CHUNK_SHIFT = 16;                // 每块 65536 个节点
+    private static final int CHUNK_NODES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_NODES - 1;
+
+    private final int stride;        // 每个节点的局面占用的 long 个数
+    private final int record;        // 每个节点占用的字节数
+    private final long maxNodes;     // 预算允许的节点数
+    private final long[] scratch;    // 打包局面用的临时数组
+    private ByteBuffer[] chunks = new ByteBuffer[16];
+    private int size;
+    private long allocated;          // 已分配的字节数
+
+    /**
+     * 创建节点存储
+     * @param stride 每个局面的 long 个数，即 BoardState.packedLength
+     * @param budgetBytes 允许使用的堆外内存字节数
+     */
+    public OffHeapNodeStore(int stride, long budgetBytes) {
+        this.stride = stride;
+        this.record = stride * 8 + 8;
+        this.maxNodes = Math.min(budgetBytes / record, Integer.MAX_VALUE);
+        this.scratch = new long[stride];
+    }
+
+    @Override
+    public int add(BoardState state, int parent, int move) {
+        if (size >= maxNodes) {
+            throw new OutOfMemoryError("节点数量超出堆外内存预算");
+        }
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        if (chunks[chunk] == null) {
+            int nodes = (int) Math.min(CHUNK_NODES, maxNodes - ((long) chunk << CHUNK_SHIFT));
+            chunks[chunk] = ByteBuffer.allocateDirect(nodes * record).order(ByteOrder.nativeOrder());
+            allocated += (long) nodes * record;
+        }
+        ByteBuffer buffer = chunks[chunk];
+        int offset = (size & CHUNK_MASK) * record;
+        state.pack(scratch, 0);
+        for (int i = 0; i < stride; i++) {
+            buffer.putLong(offset + i * 8, scratch[i]);
+        }
+        buffer.putInt(offset + stride * 8, parent);
+        buffer.putInt(offset + stride * 8 + 4, move);
+        return size++;
+    }
+
+    @Override
+    public void load(int node, BoardState state) {
+        ByteBuffer buffer = chunks[node >>> CHUNK_SHIFT];
+        int offset = (node & CHUNK_MASK) * record;
+        for (int i = 0; i < stride; i++) {
+            scratch[i] = buffer.getLong(offset + i * 8);
+        }
+        state.unpack(scratch, 0);
+    }
+
+    @Override
+    public int parent(int node) {
+        return chunks[node >>> CHUNK_SHIFT].getInt((node & CHUNK_MASK) * record + stride * 8);
+    }
+
+    @Override
+    public int move(int node) {
+        return chunks[node >>> CHUNK_SHIFT].getInt((node & CHUNK_MASK) * record + stride * 8 + 4);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytes() {
+        return allocated;
+    }
+}
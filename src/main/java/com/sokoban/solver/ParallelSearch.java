@@ -0,0 +1,391 @@
+package com.sokoban.solver;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.DeadlockDetector;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 多线程 A* 搜索（HDA*），启发函数与 AStarSearch 相同
+ * 每个局面按 Zobrist 哈希归属于一个线程，只由该线程展开。每个线程有自己的开放列表（BucketQueue），
+ * 与 AStarSearch 一样按 f 值最小、同 f 值后进先出的顺序展开；生成的子节点属于其他线程时，
+ * 先放入发往该线程的批次，攒够一批或本线程空闲时再投递到对方的收件队列。
+ *
+ * 线程展开出目标局面后记下它的推动次数作为当前最优解，之后 f 值不小于它的节点直接丢弃，
+ * 其余节点照常展开，直到所有线程都没有待处理的节点。启发函数一致，最终保留的解推动次数最少。
+ * 待处理的节点（开放列表中、批次中或在途）用一个计数器统计，先加上子节点数再减去父节点，
+ * 计数器为 0 时说明搜索已结束。
+ *
+ * 每个线程拥有自己的节点段、可达区域计算器、死锁检测器和匹配器，展开时不加锁；
+ * 线程之间共享无锁置换表，发送子节点前先在表中去重，减少投递量。
+ * 节点用 (段号 << 40 | 段内编号) 引用，父节点可以位于其他线程的段中，解路径在所有线程结束后回溯
+ */
+final class ParallelSearch extends Search {
+    private static final int SEGMENT_SHIFT = 40;
+    private static final long INDEX_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int BATCH_SIZE = 64;       // 发往其他线程的批次达到该大小时投递
+    private static final int FLUSH_INTERVAL = 16;   // 每展开这么多个节点投递一次所有未满的批次
+    private static final long IDLE_NANOS = 20_000;  // 没有待处理节点时的等待间隔
+
+    private final int stride;
+    private final Zobrist zobrist;
+    private final PushDistances distances;
+    private final ConcurrentTranspositionTable table;
+    private final Worker[] workers;
+    private final LongAdder expanded = new LongAdder();
+    private final AtomicLong outstanding = new AtomicLong();  // 尚未处理的节点数
+    private volatile boolean stopped;
+    private volatile int bestCost = Integer.MAX_VALUE;       // 当前最优解的推动次数
+    private long goal = -1;                                   // 当前最优解的目标节点，由 offerGoal 同步写入
+    private Throwable failure;                                // 第一个异常结束的线程抛出的异常
+
+    ParallelSearch(Solver solver, long deadline) {
+        super(solver, deadline);
+        this.stride = BoardState.packedLength(layout);
+        this.zobrist = new Zobrist(layout);
+        this.distances = new PushDistances(layout);
+        this.table = new ConcurrentTranspositionTable(tableEntries);
+        this.workers = new Worker[Math.max(1, solver.getThreads())];
+    }
+
+    @Override
+    int[] run() {
+        int boxCount = start.getBoxCount();
+        if (boxCount > layout.getTargetCount()) return null;  // 箱子比目标点多，不可能过关
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+        }
+        BoardState state = new BoardState(start);
+        Worker first = workers[0];
+        state.setPlayer(first.reach.fill(start.getPlayer(), state));
+        int h = first.matcher.match(first.boxCells(state));
+        if (h >= PushDistances.INFINITE) return null;
+        long key = zobrist.hash(state);
+        table.put(key, 0);
+        outstanding.set(1);
+        workers[owner(key)].push(state, -1, 0, 0, h);
+
+        Thread[] threads = new Thread[workers.length];
+        try {
+            for (int i = 0; i < workers.length; i++) {
+                threads[i] = new Thread(workers[i], "sokoban-solver-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+        } finally {
+            joinAll(threads);
+            nodes = expanded.sum();
+        }
+        if (failure instanceof Error) throw (Error) failure;
+        if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+        return goal < 0 || isLimitReached() ? null : path(goal);
+    }
+
+    /**
+     * 等待所有线程结束；等待时被中断则通知各线程停止，仍等到它们结束，之后恢复中断标记
+     */
+    private void joinAll(Thread[] threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread != null) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stopped = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private int owner(long key) {
+        return (int) Long.remainderUnsigned(TranspositionTable.mix(key), workers.length);
+    }
+
+    private synchronized void offerGoal(long ref, int cost) {
+        if (cost < bestCost) {
+            goal = ref;
+            bestCost = cost;
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure == null) failure = e;
+        stopped = true;
+    }
+
+    private Segment segment(long ref) {
+        return workers[(int) (ref >>> SEGMENT_SHIFT)].segment;
+    }
+
+    /**
+     * 从目标节点沿父节点引用回溯出推动序列，在所有线程结束后调用
+     */
+    private int[] path(long ref) {
+        int depth = 0;
+        for (long n = ref; segment(n).parent(n) >= 0; n = segment(n).parent(n)) depth++;
+        int[] path = new int[depth];
+        for (long n = ref; segment(n).parent(n) >= 0; n = segment(n).parent(n)) {
+            path[--depth] = segment(n).move(n);
+        }
+        return path;
+    }
+
+    /**
+     * 单个线程的搜索上下文；除收件队列外只被所属线程访问
+     */
+    private final class Worker implements Runnable {
+        private final int id;
+        private final Segment segment;
+        private final BucketQueue open = new BucketQueue();
+        private final ConcurrentLinkedQueue<Batch> inbox = new ConcurrentLinkedQueue<>();
+        private final Batch[] outbox;                    // 发往各线程、尚未投递的批次
+        private final Reachability reach = new Reachability(layout);
+        private final Reachability childReach = new Reachability(layout);
+        private final DeadlockDetector detector = new DeadlockDetector(layout);
+        private final HungarianMatcher matcher;
+        private final BoardState state = new BoardState(layout);
+        private final int[] rows;
+        private long dropped;                            // 丢弃的节点数，未计入 outstanding
+        private int count;                               // 本线程展开的节点数，用于间隔检查上限
+
+        Worker(int id) {
+            this.id = id;
+            this.segment = new Segment(id);
+            this.outbox = new Batch[workers.length];
+            this.rows = new int[start.getBoxCount()];
+            this.matcher = new HungarianMatcher(distances, rows.length, layout.getTargetCount());
+        }
+
+        @Override
+        public void run() {
+            try {
+                search();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void search() {
+            while (!stopped) {
+                receive();
+                if (open.minF() >= bestCost) {
+                    // 开放列表中的节点都不可能得到更短的解
+                    dropped += open.size();
+                    while (!open.isEmpty()) open.pop();
+                }
+                if (dropped > 0) {
+                    outstanding.addAndGet(-dropped);
+                    dropped = 0;
+                }
+                if (open.isEmpty()) {
+                    flush(1);
+                    if (outstanding.get() == 0) return;
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                long entry = open.pop();
+                int children = expand(segment.base | (int) entry, (int) (entry >>> 32));
+                // 先计入子节点再减去父节点，计数器在搜索结束前不会降到 0
+                outstanding.addAndGet(children - 1);
+                flush(++count % FLUSH_INTERVAL == 0 ? 1 : BATCH_SIZE);
+                if ((count & 1023) == 0 && outOfBudget(expanded.sum())) stopped = true;
+            }
+        }
+
+        /**
+         * 展开一个节点
+         * @return 生成的子节点数
+         */
+        private int expand(long ref, int g) {
+            segment.load(ref, state);
+            long boxHash = zobrist.boxHash(state);
+            // 之后又找到了更短的路径，这个条目已过期
+            int best = table.getDepth(zobrist.withPlayer(boxHash, state.getPlayer()));
+            if (best >= 0 && best < g) return 0;
+
+            expanded.increment();
+            if (state.isSolved()) {
+                offerGoal(ref, g);
+                return 0;
+            }
+
+            int children = 0;
+            matcher.match(boxCells(state));
+            matcher.save();
+            reach.fill(state.getPlayer(), state);
+            for (int row = 0; row < rows.length; row++) {
+                int box = rows[row];
+                for (int d = UP; d <= LEFT; d++) {
+                    int dest = layout.step(box, d);
+                    if (dest < 0 || state.hasBox(dest) || layout.isDead(dest)) continue;
+                    int behind = layout.step(box, MapLayout.opposite(d));
+                    if (behind < 0 || !reach.reached(behind)) continue;
+
+                    int player = state.getPlayer();
+                    state.moveBox(box, dest);
+                    if (!detector.isDeadlockAfterPush(state, dest)) {
+                        matcher.restore();
+                        int childH = matcher.update(row, dest);
+                        if (childH < PushDistances.INFINITE && g + 1 + childH < bestCost) {
+                            state.setPlayer(childReach.fill(box, state));
+                            long key = zobrist.withPlayer(zobrist.move(boxHash, box, dest), state.getPlayer());
+                            if (table.put(key, g + 1) != TranspositionTable.DUPLICATE) {
+                                send(owner(key), state, ref, NodeStore.encodeMove(box, d), g + 1, childH);
+                                children++;
+                            }
+                        }
+                    }
+                    state.moveBox(dest, box);
+                    state.setPlayer(player);
+                }
+            }
+            return children;
+        }
+
+        private void send(int to, BoardState child, long parent, int move, int depth, int h) {
+            if (to == id) {
+                push(child, parent, move, depth, h);
+                return;
+            }
+            if (outbox[to] == null) outbox[to] = new Batch();
+            outbox[to].add(child, parent, move, depth, h);
+        }
+
+        void push(BoardState child, long parent, int move, int depth, int h) {
+            int index = segment.add(child, parent, move);
+            open.push(depth + h, depth, index);
+        }
+
+        /**
+         * 投递达到 minSize 的批次
+         */
+        private void flush(int minSize) {
+            for (int to = 0; to < outbox.length; to++) {
+                Batch batch = outbox[to];
+                if (batch != null && batch.size >= minSize) {
+                    workers[to].inbox.add(batch);
+                    outbox[to] = null;
+                }
+            }
+        }
+
+        /**
+         * 把收到的节点存入本线程的段并加入开放列表
+         */
+        private void receive() {
+            Batch batch;
+            while ((batch = inbox.poll()) != null) {
+                int cost = bestCost;
+                for (int i = 0; i < batch.size; i++) {
+                    if (batch.depths[i] + batch.hs[i] >= cost) {
+                        dropped++;
+                        continue;
+                    }
+                    int index = segment.add(batch.states, i * stride, batch.parents[i], batch.moves[i]);
+                    open.push(batch.depths[i] + batch.hs[i], batch.depths[i], index);
+                }
+            }
+        }
+
+        int[] boxCells(BoardState state) {
+            int r = 0;
+            for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+                rows[r++] = box;
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 发往同一个线程的一批子节点，投递后只由接收线程读取
+     */
+    private final class Batch {
+        private long[] states = new long[BATCH_SIZE * stride];
+        private long[] parents = new long[BATCH_SIZE];
+        private int[] moves = new int[BATCH_SIZE];
+        private int[] depths = new int[BATCH_SIZE];
+        private int[] hs = new int[BATCH_SIZE];
+        private int size;
+
+        void add(BoardState state, long parent, int move, int depth, int h) {
+            if (size == moves.length) {
+                int capacity = size * 2;
+                states = Arrays.copyOf(states, capacity * stride);
+                parents = Arrays.copyOf(parents, capacity);
+                moves = Arrays.copyOf(moves, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+                hs = Arrays.copyOf(hs, capacity);
+            }
+            state.pack(states, size * stride);
+            parents[size] = parent;
+            moves[size] = move;
+            depths[size] = depth;
+            hs[size] = h;
+            size++;
+        }
+    }
+
+    /**
+     * 一个线程独占的节点段，搜索期间只由所属线程读写，搜索结束后用于回溯解路径
+     */
+    private final class Segment {
+        private final long base;   // 段号 << 40
+        private long[] states = new long[256 * stride];
+        private long[] parents = new long[256];
+        private int[] moves = new int[256];
+        private int size;
+
+        Segment(int id) {
+            this.base = (long) id << SEGMENT_SHIFT;
+        }
+
+        int add(BoardState state, long parent, int move) {
+            if (size == moves.length) grow();
+            state.pack(states, size * stride);
+            return set(parent, move);
+        }
+
+        int add(long[] packed, int offset, long parent, int move) {
+            if (size == moves.length) grow();
+            System.arraycopy(packed, offset, states, size * stride, stride);
+            return set(parent, move);
+        }
+
+        private int set(long parent, int move) {
+            parents[size] = parent;
+            moves[size] = move;
+            return size++;
+        }
+
+        void load(long ref, BoardState state) {
+            state.unpack(states, (int) (ref & INDEX_MASK) * stride);
+        }
+
+        long parent(long ref) {
+            return parents[(int) (ref & INDEX_MASK)];
+        }
+
+        int move(long ref) {
+            return moves[(int) (ref & INDEX_MASK)];
+        }
+
+        private void grow() {
+            int capacity = moves.length + (moves.length >> 1);
+            if ((long) capacity * stride > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("节点数量超出数组容量");
+            }
+            states = Arrays.copyOf(states, capacity * stride);
+            parents = Arrays.copyOf(parents, capacity);
+            moves = Arrays.copyOf(moves, capacity);
+        }
+    }
+}
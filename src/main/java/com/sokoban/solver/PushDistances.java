@@ -0,0 +1,55 @@
+package com.sokoban.solver;
+
+import java.util.Arrays;
+
+import com.sokoban.model.Direction;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 推动距离表：忽略其他箱子时，把一个箱子从某格推到某个目标点至少需要推几次
+ * 对每个目标点做一次反向“拉箱子”的广度优先搜索，结果作为启发函数的代价矩阵
+ */
+public final class PushDistances implements Direction {
+    // 无法到达时的距离，足够大但多个相加不会溢出
+    public static final int INFINITE = 1_000_000;
+
+    private final int size;
+    private final int[] distances;  // distances[目标序号 * size + 格子]
+
+    public PushDistances(MapLayout layout) {
+        this.size = layout.size;
+        int targets = layout.getTargetCount();
+        this.distances = new int[targets * size];
+        Arrays.fill(distances, INFINITE);
+        int[] queue = new int[size];
+        for (int t = 0; t < targets; t++) {
+            int base = t * size;
+            int head = 0, tail = 0;
+            int target = layout.getTarget(t);
+            distances[base + target] = 0;
+            queue[tail++] = target;
+            while (head < tail) {
+                int box = queue[head++];
+                int next = distances[base + box] + 1;
+                for (int d = UP; d <= LEFT; d++) {
+                    // 箱子从 prev 沿方向 d 推到 box，男孩站在 prev 的反方向
+                    int prev = layout.step(box, MapLayout.opposite(d));
+                    if (prev < 0 || distances[base + prev] != INFINITE) continue;
+                    if (layout.step(prev, MapLayout.opposite(d)) < 0) continue;
+                    distances[base + prev] = next;
+                    queue[tail++] = prev;
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取推动距离
+     * @param target 目标点序号（MapLayout.getTarget 的序号）
+     * @param cell 箱子所在格子
+     * @return 推动次数下界，无法到达返回 INFINITE
+     */
+    public int get(int target, int cell) {
+        return distances[target * size + cell];
+    }
+}
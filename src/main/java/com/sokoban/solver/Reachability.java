@@ -0,0 +1,116 @@
+package com.sokoban.solver;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.Direction;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 男孩可达区域计算器
+ * 在箱子位置固定的情况下，用广度优先搜索求出男孩能走到的所有格子
+ * 使用“代数”标记避免每次清空数组，搜索过程中不分配对象
+ */
+public class Reachability implements Direction {
+    private final MapLayout layout;
+    private final int[] mark;    // mark[i] == stamp 表示本次可达
+    private final int[] queue;   // 广度优先队列
+    private final int[] from;    // 到达每个格子时走的方向，用于还原路径
+    private int stamp = 0;
+    private int min;             // 本次可达区域中最小的格子下标
+
+    public Reachability(MapLayout layout) {
+        this.layout = layout;
+        this.mark = new int[layout.size];
+        this.queue = new int[layout.size];
+        this.from = new int[layout.size];
+    }
+
+    /**
+     * 计算男孩从起点出发的可达区域
+     * @param start 男孩所在格子
+     * @param state 局面，只使用其中的箱子位图
+     * @return 可达区域中最小的格子下标，可作为该区域的标准化男孩位置
+     */
+    public int fill(int start, BoardState state) {
+        if (++stamp == 0) {
+            java.util.Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        mark[start] = stamp;
+        min = start;
+        while (head < tail) {
+            int cur = queue[head++];
+            for (int d = UP; d <= LEFT; d++) {
+                int n = layout.step(cur, d);
+                if (n >= 0 && mark[n] != stamp && !state.hasBox(n)) {
+                    mark[n] = stamp;
+                    from[n] = d;
+                    queue[tail++] = n;
+                    if (n < min) min = n;
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * 判断格子是否在最近一次 fill 的可达区域内
+     * @param index 格子下标
+     * @return 是否可达
+     */
+    public boolean reached(int index) {
+        return mark[index] == stamp;
+    }
+
+    /**
+     * 获取最近一次 fill 的标准化男孩位置
+     * @return 可达区域中最小的格子下标
+     */
+    public int normalized() {
+        return min;
+    }
+
+    /**
+     * 还原从最近一次 fill 的起点走到目标格子的路径，追加到字符串末尾
+     * @param target 目标格子，必须可达
+     * @param out 输出，使用小写 LURD 字母
+     */
+    public void appendPath(int target, StringBuilder out) {
+        int start = out.length();
+        int cur = target;
+        while (cur != queue[0]) {
+            int d = from[cur];
+            out.append(Character.toLowerCase(letter(d)));
+            cur = layout.step(cur, MapLayout.opposite(d));
+        }
+        // 路径是从终点倒推的，只翻转新追加的部分
+        reverseTail(out, start);
+    }
+
+    private static void reverseTail(StringBuilder sb, int start) {
+        for (int i = start, j = sb.length() - 1; i < j; i++, j--) {
+            char c = sb.charAt(i);
+            sb.setCharAt(i, sb.charAt(j));
+            sb.setCharAt(j, c);
+        }
+    }
+
+    /**
+     * 方向对应的大写 LURD 字母
+     * @param direction 方向
+     * @return U、R、D、L 之一
+     */
+    public static char letter(int direction) {
+        switch (direction) {
+            case UP:
+                return 'U';
+            case RIGHT:
+                return 'R';
+            case DOWN:
+                return 'D';
+            default:
+                return 'L';
+        }
+    }
+}
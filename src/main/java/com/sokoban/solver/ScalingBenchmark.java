@@ -0,0 +1,83 @@
+package com.sokoban.solver;
+
+import java.io.IOException;
+
+import com.sokoban.model.LevelData;
+
+/**
+ * 多线程求解器的扩展性基准测试
+ * 对指定关卡先用单线程 ASTAR 模式求解作为基准，再依次用 1、2、4、8、16、32 个线程（或命令行给出的线程数）
+ * 执行 PARALLEL 模式求解，输出每种线程数的耗时、节点速率和相对 ASTAR 的加速比。
+ * 加速比以顺序搜索为基准，并行搜索多展开的节点和线程间通信的开销都计入其中。每次求解先预热一次再计时
+ *
+ * 用法：java -cp target/classes com.sokoban.solver.ScalingBenchmark [起始关卡] [结束关卡] [单关时限秒] [线程数,线程数,...]
+ */
+public class ScalingBenchmark {
+    private static final int[] DEFAULT_THREADS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int from = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int to = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        int[] threadCounts = args.length > 3 ? parseThreads(args[3]) : DEFAULT_THREADS;
+
+        System.out.printf("可用处理器：%d%n", Runtime.getRuntime().availableProcessors());
+        long[] totalMillis = new long[threadCounts.length];
+        long[] baselineMillis = new long[threadCounts.length];  // 对应关卡的 ASTAR 耗时合计
+        for (int level = from; level <= to; level++) {
+            LevelData data = LevelData.load(level);
+            run(data, seconds, Solver.Mode.ASTAR, 1);  // 预热
+            System.gc();
+            SolverResult sequential = run(data, seconds, Solver.Mode.ASTAR, 1);
+            if (sequential.status != SolverResult.Status.SOLVED) {
+                System.out.printf("关卡 %d  ASTAR  %s，跳过%n", level, sequential.status);
+                continue;
+            }
+            long baseline = sequential.elapsedMillis;
+            System.out.printf("关卡 %d  ASTAR     推动 %d  节点 %d  耗时 %d ms  %d 节点/秒%n",
+                    level, sequential.pushes, sequential.nodes, baseline, sequential.nodesPerSecond());
+            for (int t = 0; t < threadCounts.length; t++) {
+                int threads = threadCounts[t];
+                run(data, seconds, Solver.Mode.PARALLEL, threads);  // 预热
+                System.gc();
+                SolverResult result = run(data, seconds, Solver.Mode.PARALLEL, threads);
+                if (result.status != SolverResult.Status.SOLVED) {
+                    System.out.printf("关卡 %d  %2d 线程  %s%n", level, threads, result.status);
+                    continue;
+                }
+                totalMillis[t] += result.elapsedMillis;
+                baselineMillis[t] += baseline;
+                System.out.printf("关卡 %d  %2d 线程  推动 %d  节点 %d  耗时 %d ms  %d 节点/秒  加速比 %.2f%n",
+                        level, threads, result.pushes, result.nodes, result.elapsedMillis,
+                        result.nodesPerSecond(), speedup(baseline, result.elapsedMillis));
+            }
+        }
+        System.out.println("合计：");
+        for (int t = 0; t < threadCounts.length; t++) {
+            System.out.printf("%2d 线程  耗时 %d ms  ASTAR 耗时 %d ms  加速比 %.2f%n",
+                    threadCounts[t], totalMillis[t], baselineMillis[t], speedup(baselineMillis[t], totalMillis[t]));
+        }
+    }
+
+    private static SolverResult run(LevelData data, long seconds, Solver.Mode mode, int threads) {
+        return new Solver(data)
+                .setTimeLimitMillis(seconds * 1000)
+                .setMode(mode)
+                .setThreads(threads)
+                .solve();
+    }
+
+    private static double speedup(long baseline, long millis) {
+        return millis == 0 ? 0 : (double) baseline / millis;
+    }
+
+    private static int[] parseThreads(String arg) {
+        String[] parts = arg.split(",");
+        int[] threads = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            threads[i] = Integer.parseInt(parts[i].trim());
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,111 @@
+package com.sokoban.solver;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.Direction;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 搜索算法的公共基类
+ * 保存地图布局、初始局面和资源上限，子类实现具体的搜索策略，
+ * 返回推动序列（NodeStore.encodeMove 编码），由 Solver 还原为完整的 LURD 解法
+ */
+abstract class Search implements Direction {
+    private final Solver solver;
+    protected final MapLayout layout;
+    protected final BoardState start;   // 初始局面，男孩位置为真实起点
+    protected final int tableEntries;
+    protected final boolean macroMoves;  // 是否使用隧道和目标房间宏移动
+    private final long offHeapBytes;    // 堆外内存预算，0 表示使用堆内存储
+    private final long maxNodes;
+    private final long deadline;
+
+    protected long nodes;                // 已展开的节点数
+    private boolean limitReached;
+
+    Search(Solver solver, long deadline) {
+        this.solver = solver;
+        this.layout = solver.getLayout();
+        this.start = solver.getStart();
+        this.tableEntries = solver.getTableEntries();
+        this.maxNodes = solver.getMaxNodes();
+        this.macroMoves = solver.isMacroMoves();
+        this.offHeapBytes = solver.getOffHeapBytes();
+        this.deadline = deadline;
+    }
+
+    /**
+     * 创建置换表，设置了堆外内存预算时放在堆外，占预算的四分之一
+     * @return 置换表
+     */
+    protected TranspositionTable newTable() {
+        if (offHeapBytes <= 0) return new TranspositionTable(tableEntries);
+        return TranspositionTable.offHeap(offHeapBytes / 4 / 16);
+    }
+
+    /**
+     * 创建 A* 开放列表，设置了堆外内存预算时放在堆外，占预算的八分之一
+     * @return 开放列表
+     */
+    protected BucketQueue newOpenList() {
+        if (offHeapBytes <= 0) return new BucketQueue();
+        return BucketQueue.offHeap(offHeapBytes / 8);
+    }
+
+    /**
+     * 创建节点存储，设置了堆外内存预算时放在堆外，占预算的其余部分（去掉置换表和开放列表的份额）
+     * @return 节点存储
+     */
+    protected NodeStore newNodeStore() {
+        int stride = BoardState.packedLength(layout);
+        if (offHeapBytes <= 0) return new HeapNodeStore(stride, 1 << 12);
+        return new OffHeapNodeStore(stride, offHeapBytes - offHeapBytes / 4 - offHeapBytes / 8);
+    }
+
+    /**
+     * 执行搜索
+     * @return 推动序列，无解或达到上限时返回 null
+     */
+    abstract int[] run();
+
+    /**
+     * 检查是否超出节点数或时间上限，每 1024 个节点检查一次时间和取消请求
+     * @return 是否应停止搜索
+     */
+    protected boolean outOfBudget() {
+        if (nodes >= maxNodes || ((nodes & 1023) == 0 && (System.nanoTime() > deadline || solver.isCancelled()))) {
+            limitReached = true;
+        }
+        return limitReached;
+    }
+
+    /**
+     * 多线程搜索使用的上限检查，节点数由调用方汇总
+     * @param expanded 所有线程已展开的节点总数
+     * @return 是否应停止搜索，返回 true 时记录为达到上限
+     */
+    protected boolean outOfBudget(long expanded) {
+        if (expanded >= maxNodes || System.nanoTime() > deadline || solver.isCancelled()) {
+            limitReached = true;
+        }
+        return limitReached;
+    }
+
+    /**
+     * 把结果记为达到上限：搜索已结束，但因为资源不足无法断定关卡无解
+     */
+    protected void markLimitReached() {
+        limitReached = true;
+    }
+
+    /**
+     * 是否因为达到上限而停止
+     * @return 是否达到上限
+     */
+    boolean isLimitReached() {
+        return limitReached;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,265 @@
+package com.sokoban.solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.Direction;
+import com.sokoban.model.LevelData;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 无界面推箱子求解器
+ * 以推箱子次数为代价搜索，得到推动次数最少的解法，搜索策略见 Mode。
+ * 已访问局面用 Zobrist 哈希记录在固定容量的置换表中，节点保存在基本类型数组里。
+ * 推入静态死格或造成冻结死锁的推动直接剪枝。
+ * 搜索只依赖 LevelData 和 MapLayout，不创建 Game、GameWindow 或任何 Swing 对象，
+ * 移动规则与 GameLevel 的 handleUp/Down/Left/Right 和 canBoxMoveIn 一致：
+ * 男孩只能走通道和目标点，箱子只能被推入没有箱子的通道或目标点
+ */
+public class Solver implements Direction {
+    /**
+     * 搜索模式，各模式得到的都是推动次数最少的解（ASTAR 启用宏移动时除外）
+     */
+    public enum Mode {
+        BFS,    // 按推动次数逐层的广度优先搜索
+        ASTAR,  // 以最小代价匹配为启发函数的 A* 搜索
+        PARALLEL, // 多线程 A* 搜索，按 f 值分层并行展开，共享无锁置换表
+        BIDIRECTIONAL // 正向推箱子与反向拉箱子同时逐层展开的双向广度优先搜索
+    }
+
+    private final int level;
+    private final MapLayout layout;
+    private final int startBoy;
+    private final BoardState start;
+
+    private long maxNodes = 5_000_000L;      // 节点上限
+    private long timeLimitMillis = 60_000L;  // 时间上限
+    private int tableEntries = 1 << 21;      // 置换表容量（每条 16 字节）
+    private Mode mode = Mode.ASTAR;          // 搜索模式
+    private long offHeapBytes = 0;           // 堆外内存预算，0 表示节点和置换表放在堆内
+    private boolean macroMoves = false;      // ASTAR 模式是否使用宏移动
+    private int threads = Runtime.getRuntime().availableProcessors();  // PARALLEL 模式的线程数
+    private volatile boolean cancelled = false;  // 是否已被其他线程取消
+
+    /**
+     * 根据关卡数据创建求解器
+     * @param data 关卡数据
+     */
+    public Solver(LevelData data) {
+        this.level = data.level;
+        this.layout = data.map.getLayout();
+        this.startBoy = data.boyX >= 0 ? layout.index(data.boyX, data.boyY) : -1;
+        this.start = data.newState();
+    }
+
+    /**
+     * 从任意局面创建求解器，用于游戏中途求提示
+     * @param level 关卡编号，只用于结果显示
+     * @param state 当前局面，男孩位置为真实坐标；求解器保存其副本
+     */
+    public Solver(int level, BoardState state) {
+        this.level = level;
+        this.layout = state.getLayout();
+        this.startBoy = state.getPlayer();
+        this.start = new BoardState(state);
+    }
+
+    public Solver setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    public Solver setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+        return this;
+    }
+
+    /**
+     * 设置置换表容量
+     * @param tableEntries 条目数，会向上取整为 2 的幂
+     * @return 求解器本身
+     */
+    public Solver setTableEntries(int tableEntries) {
+        this.tableEntries = tableEntries;
+        return this;
+    }
+
+    /**
+     * 设置搜索模式
+     * @param mode 搜索模式
+     * @return 求解器本身
+     */
+    public Solver setMode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * 设置堆外内存预算，BFS、ASTAR 和 BIDIRECTIONAL 模式的节点存储和置换表改为放在直接内存中，
+     * ASTAR 模式的开放列表也放在直接内存中
+     * 置换表占四分之一，此时忽略 setTableEntries；开放列表占八分之一，其余给节点存储；
+     * 节点存储或开放列表超出预算时按达到上限处理。
+     * 搜索规模达到数 GB 时可避免堆内大数组带来的长时间垃圾回收，并能按任务精确限定内存
+     * @param bytes 字节数，0 表示使用堆内存储
+     * @return 求解器本身
+     */
+    public Solver setOffHeapMemory(long bytes) {
+        this.offHeapBytes = Math.max(0, bytes);
+        return this;
+    }
+
+    /**
+     * 设置 ASTAR 模式是否使用隧道和目标房间宏移动
+     * 宏移动把没有实际选择的一串推动合并为一步，能明显减少节点数和内存，
+     * 但不再保证推动次数最少，适合只需要尽快得到一个解的场景（如提示）。
+     * 地图超过约 13 万个格子时宏的编码放不下，此设置不起作用
+     * @param macroMoves 是否使用宏移动
+     * @return 求解器本身
+     */
+    public Solver setMacroMoves(boolean macroMoves) {
+        this.macroMoves = macroMoves;
+        return this;
+    }
+
+    /**
+     * 设置 PARALLEL 模式使用的线程数
+     * @param threads 线程数，小于 1 时按 1 处理
+     * @return 求解器本身
+     */
+    public Solver setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * 请求停止正在进行的搜索，可以从其他线程调用
+     * 搜索在下一次检查上限时停止（至多再展开约 1024 个节点），结果按达到上限处理
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    MapLayout getLayout() {
+        return layout;
+    }
+
+    BoardState getStart() {
+        return start;
+    }
+
+    long getMaxNodes() {
+        return maxNodes;
+    }
+
+    int getTableEntries() {
+        return tableEntries;
+    }
+
+    boolean isMacroMoves() {
+        return macroMoves;
+    }
+
+    long getOffHeapBytes() {
+        return offHeapBytes;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 执行求解
+     * @return 求解结果
+     */
+    public SolverResult solve() {
+        resetPeakMemory();
+        long begin = System.nanoTime();
+        long deadline = begin + timeLimitMillis * 1_000_000L;
+        if (startBoy < 0) {
+            // 地图中没有男孩，无法移动
+            return new SolverResult(level, SolverResult.Status.UNSOLVABLE, null, 0, 0, peakMemory());
+        }
+
+        Search search = createSearch(deadline);
+        int[] pushes;
+        boolean outOfMemory = false;
+        try {
+            pushes = search.run();
+        } catch (OutOfMemoryError e) {
+            // 节点存储超出容量或内存预算，搜索中的数据随 search 一起丢弃
+            pushes = null;
+            outOfMemory = true;
+        }
+        long elapsed = (System.nanoTime() - begin) / 1_000_000L;
+
+        SolverResult.Status status;
+        String solution = null;
+        if (pushes != null) {
+            status = SolverResult.Status.SOLVED;
+            solution = buildSolution(pushes);
+        } else if (outOfMemory || search.isLimitReached()) {
+            status = SolverResult.Status.LIMIT;
+        } else {
+            status = SolverResult.Status.UNSOLVABLE;
+        }
+        return new SolverResult(level, status, solution, search.getNodes(), elapsed, peakMemory());
+    }
+
+    private Search createSearch(long deadline) {
+        switch (mode) {
+            case BFS:
+                return new BreadthFirstSearch(this, deadline);
+            case PARALLEL:
+                return new ParallelSearch(this, deadline);
+            case BIDIRECTIONAL:
+                return new BidirectionalSearch(this, deadline);
+            case ASTAR:
+            default:
+                return new AStarSearch(this, deadline);
+        }
+    }
+
+    /**
+     * 把推动序列还原为包含走路和推箱子的完整 LURD 解法
+     */
+    private String buildSolution(int[] pushes) {
+        Reachability reach = new Reachability(layout);
+        BoardState state = new BoardState(start);
+        int boy = startBoy;
+        StringBuilder sb = new StringBuilder();
+        for (int move : pushes) {
+            int box = NodeStore.moveBox(move);
+            int direction = NodeStore.moveDirection(move);
+            reach.fill(boy, state);
+            reach.appendPath(layout.step(box, MapLayout.opposite(direction)), sb);
+            sb.append(Reachability.letter(direction));
+            state.moveBox(box, layout.step(box, direction));
+            boy = box;
+        }
+        return sb.toString();
+    }
+
+    private static void resetPeakMemory() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakMemory() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,44 @@
+package com.sokoban.solver;
+
+import java.io.IOException;
+
+import com.sokoban.model.LevelData;
+
+/**
+ * 求解器批量基准测试入口，可在无图形界面的构建机上运行
+ * 依次求解指定范围内的关卡，输出每关的解法长度、节点速率和内存峰值
+ *
+ * 用法：java -cp target/classes com.sokoban.solver.SolverBenchmark [起始关卡] [结束关卡] [单关时限秒] [BFS|ASTAR|PARALLEL|BIDIRECTIONAL] [堆外内存MB] [宏移动 true|false]
+ */
+public class SolverBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int from = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int to = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        Solver.Mode mode = args.length > 3 ? Solver.Mode.valueOf(args[3].toUpperCase()) : Solver.Mode.ASTAR;
+        long offHeapMb = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        boolean macroMoves = args.length > 5 && Boolean.parseBoolean(args[5]);
+
+        int solved = 0;
+        long totalNodes = 0, totalMillis = 0;
+        for (int level = from; level <= to; level++) {
+            LevelData data = LevelData.load(level);
+            // 先回收上一关的垃圾，让内存峰值只反映本关
+            System.gc();
+            SolverResult result = new Solver(data)
+                    .setTimeLimitMillis(seconds * 1000)
+                    .setMode(mode)
+                    .setOffHeapMemory(offHeapMb * 1024 * 1024)
+                    .setMacroMoves(macroMoves)
+                    .solve();
+            System.out.println(result);
+            if (result.status == SolverResult.Status.SOLVED) solved++;
+            totalNodes += result.nodes;
+            totalMillis += result.elapsedMillis;
+        }
+        System.out.printf("已求解 %d / %d 关，共展开 %d 个节点，耗时 %d ms%n",
+                solved, to - from + 1, totalNodes, totalMillis);
+    }
+}
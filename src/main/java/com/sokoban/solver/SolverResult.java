@@ -0,0 +1,57 @@
+package com.sokoban.solver;
+
+/**
+ * 求解结果，包含解法和搜索统计信息
+ */
+public class SolverResult {
+    /**
+     * 求解状态
+     */
+    public enum Status {
+        SOLVED,       // 找到解
+        UNSOLVABLE,   // 搜索空间穷尽，无解
+        LIMIT         // 达到时间或节点上限
+    }
+
+    public final int level;             // 关卡编号
+    public final Status status;         // 求解状态
+    public final String solution;       // LURD 格式解法，小写为移动，大写为推箱子；无解时为 null
+    public final int pushes;            // 推箱子次数
+    public final int moves;             // 总步数（含推箱子）
+    public final long nodes;            // 展开的节点数
+    public final long elapsedMillis;    // 耗时（毫秒）
+    public final long peakMemoryBytes;  // 堆内存峰值（字节）
+
+    public SolverResult(int level, Status status, String solution, long nodes,
+                        long elapsedMillis, long peakMemoryBytes) {
+        this.level = level;
+        this.status = status;
+        this.solution = solution;
+        this.nodes = nodes;
+        this.elapsedMillis = elapsedMillis;
+        this.peakMemoryBytes = peakMemoryBytes;
+        int p = 0;
+        if (solution != null) {
+            for (int i = 0; i < solution.length(); i++) {
+                if (Character.isUpperCase(solution.charAt(i))) p++;
+            }
+        }
+        this.pushes = p;
+        this.moves = solution == null ? 0 : solution.length();
+    }
+
+    /**
+     * 每秒展开的节点数
+     * @return 节点速率
+     */
+    public long nodesPerSecond() {
+        return elapsedMillis == 0 ? nodes * 1000 : nodes * 1000 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Level %2d  %-10s pushes=%-4d moves=%-5d nodes=%-10d %8d nodes/s  %6d ms  peak=%d MB",
+                level, status, pushes, moves, nodes, nodesPerSecond(), elapsedMillis,
+                peakMemoryBytes / (1024 * 1024));
+    }
+}
@@ -0,0 +1,188 @@
+package com.sokoban.solver;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * 置换表：固定容量的开放寻址哈希表，只用两个 long 缓冲区存储
+ * keys 保存局面的 64 位 Zobrist 哈希（0 表示空槽），values 高 32 位保存推动次数，
+ * 低 32 位保存附加数据（通常是节点编号）。
+ * 缓冲区可以包装堆内 long 数组，也可以位于堆外直接内存（见 offHeap）。
+ *
+ * 表满时的替换策略：在探测窗口内淘汰推动次数最小（最早写入的层）的条目。
+ * 被淘汰的局面以后可能被再次展开，只浪费一些搜索量，不会得到错误的解。
+ * 只比较 64 位哈希，理论上存在极小概率的冲突误判
+ */
+public final class TranspositionTable {
+    // put 的返回值
+    public static final int NEW = 0, DUPLICATE = 1, IMPROVED = 2;
+
+    /**
+     * 最大容量，更大的期望容量按此截断（两个缓冲区共 8GB）
+     */
+    public static final int MAX_ENTRIES = 1 << 29;
+
+    private static final int PROBES = 8;  // 探测窗口大小
+
+    private static final int MAX_OFF_HEAP_ENTRIES = 1 << 28;  // 单个直接缓冲区最多 2GB
+
+    private final LongBuffer keys;
+    private final LongBuffer values;
+    private final int mask;
+    private long size;       // 当前条目数
+    private long evictions;  // 被替换的条目数
+
+    /**
+     * 创建置换表
+     * @param entries 期望容量，会向上取整为 2 的幂，最多 MAX_ENTRIES 条
+     */
+    public TranspositionTable(int entries) {
+        this(roundUp(entries, MAX_ENTRIES), false);
+    }
+
+    private TranspositionTable(int capacity, boolean offHeap) {
+        keys = offHeap ? allocateDirect(capacity) : LongBuffer.wrap(new long[capacity]);
+        values = offHeap ? allocateDirect(capacity) : LongBuffer.wrap(new long[capacity]);
+        mask = capacity - 1;
+    }
+
+    /**
+     * 创建位于堆外直接内存的置换表，条目不参与垃圾回收的复制和扫描
+     * @param entries 期望容量，会向上取整为 2 的幂，最多 2^28 条
+     * @return 置换表
+     */
+    public static TranspositionTable offHeap(long entries) {
+        return new TranspositionTable(roundUp(entries, MAX_OFF_HEAP_ENTRIES), true);
+    }
+
+    /**
+     * 把期望容量向上取整为 2 的幂，至少为探测窗口大小，最多为 max
+     * @param entries 期望容量
+     * @param max 最大容量，必须是 2 的幂
+     * @return 容量
+     */
+    static int roundUp(long entries, int max) {
+        if (entries >= max) return max;
+        return (int) Long.highestOneBit(Math.max(entries - 1, PROBES) << 1);
+    }
+
+    private static LongBuffer allocateDirect(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+     * 记录一个局面
+     * @param key 局面哈希
+     * @param depth 到达该局面的推动次数
+     * @param payload 附加数据
+     * @return NEW 首次出现；DUPLICATE 已存在且原记录不差；IMPROVED 已存在但本次推动次数更少，已更新
+     */
+    public int put(long key, int depth, int payload) {
+        if (key == 0) key = 1;
+        long value = ((long) depth << 32) | (payload & 0xFFFFFFFFL);
+        int slot = (int) mix(key) & mask;
+        int victim = slot;
+        int victimDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < PROBES; i++) {
+            int s = (slot + i) & mask;
+            long k = keys.get(s);
+            if (k == key) {
+                if (depth < (int) (values.get(s) >>> 32)) {
+                    values.put(s, value);
+                    return IMPROVED;
+                }
+                return DUPLICATE;
+            }
+            if (k == 0) {
+                keys.put(s, key);
+                values.put(s, value);
+                size++;
+                return NEW;
+            }
+            int d = (int) (values.get(s) >>> 32);
+            if (d < victimDepth) {
+                victimDepth = d;
+                victim = s;
+            }
+        }
+        keys.put(victim, key);
+        values.put(victim, value);
+        evictions++;
+        return NEW;
+    }
+
+    /**
+     * 查询局面记录的推动次数
+     * @param key 局面哈希
+     * @return 推动次数，不存在返回 -1
+     */
+    public int getDepth(long key) {
+        int s = find(key);
+        return s < 0 ? -1 : (int) (values.get(s) >>> 32);
+    }
+
+    /**
+     * 查询局面的附加数据
+     * @param key 局面哈希
+     * @return 附加数据，不存在返回 -1
+     */
+    public int getPayload(long key) {
+        int s = find(key);
+        return s < 0 ? -1 : (int) values.get(s);
+    }
+
+    /**
+     * 判断局面是否在表中
+     * @param key 局面哈希
+     * @return 是否存在
+     */
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    private int find(long key) {
+        if (key == 0) key = 1;
+        int slot = (int) mix(key) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            int s = (slot + i) & mask;
+            if (keys.get(s) == key) return s;
+            if (keys.get(s) == 0) return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * 清空置换表，复用已分配的数组
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            keys.put(i, 0);
+            values.put(i, 0);
+        }
+        size = 0;
+        evictions = 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * 打散哈希的低位，避免相近的 Zobrist 值落入同一段槽位
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sokoban.solver;
+
+import java.util.SplittableRandom;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * Zobrist 哈希
+ * 为每个格子分配一个“箱子随机数”和一个“男孩随机数”，局面哈希为所有箱子随机数
+ * 与标准化男孩位置随机数的异或。推动一个箱子只需异或两次即可增量更新。
+ * 随机种子固定，同一张地图在不同运行中得到相同的哈希
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5EED_50C0_BA11L;
+
+    private final long[] boxKeys;
+    private final long[] playerKeys;
+
+    public Zobrist(MapLayout layout) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        boxKeys = new long[layout.size];
+        playerKeys = new long[layout.size];
+        for (int i = 0; i < layout.size; i++) {
+            boxKeys[i] = random.nextLong();
+            playerKeys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * 计算箱子部分的哈希
+     * @param state 局面
+     * @return 所有箱子随机数的异或
+     */
+    public long boxHash(BoardState state) {
+        long h = 0;
+        for (int box = state.nextBox(0); box >= 0; box = state.nextBox(box + 1)) {
+            h ^= boxKeys[box];
+        }
+        return h;
+    }
+
+    /**
+     * 计算完整局面哈希，男孩位置应已标准化
+     * @param state 局面
+     * @return 哈希值
+     */
+    public long hash(BoardState state) {
+        return boxHash(state) ^ playerKeys[state.getPlayer()];
+    }
+
+    /**
+     * 箱子从 from 推到 to 之后的箱子哈希
+     * @param boxHash 推动前的箱子哈希
+     * @param from 原格子
+     * @param to 新格子
+     * @return 推动后的箱子哈希
+     */
+    public long move(long boxHash, int from, int to) {
+        return boxHash ^ boxKeys[from] ^ boxKeys[to];
+    }
+
+    /**
+     * 由箱子哈希和标准化男孩位置组合出完整哈希
+     * @param boxHash 箱子哈希
+     * @param player 标准化男孩位置
+     * @return 哈希值
+     */
+    public long withPlayer(long boxHash, int player) {
+        return boxHash ^ playerKeys[player];
+    }
+}
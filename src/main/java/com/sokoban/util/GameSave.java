@@ -1,71 +1,197 @@
 package com.sokoban.util;
 
 import java.io.*;
-import java.util.LinkedList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import com.sokoban.model.*;
 import com.sokoban.model.map.*;
 import com.sokoban.model.spirit.*;
 
 /**
  * 游戏存档类，用于保存和加载游戏状态
+ * 存档文件是追加式日志（见 SaveJournal）：进入关卡、重玩或日志过长时写入一个完整快照，
+ * 之后每次保存只把自上次保存以来的移动和撤销追加到文件末尾，耗时与已走过的步数无关。
+ * 保存时只在调用线程（通常是事件分发线程）上算出要写的内容，写文件由唯一的后台线程完成，
+ * 后台线程来不及写的内容合并为一次写入；新的快照会取代尚未写入的旧内容。
+ * 读档、删档和显式 flush 都排在已提交的写入之后执行，进程退出时也会先把最后的内容写完。
+ * 快照通过临时文件原子地替换存档文件，每条记录带 CRC32C 校验，读档时恢复到最后一个有效快照及其后的有效记录。
+ * 快照使用紧凑的二进制编码（见 SaveCodec），只记录关卡号和移动历史，读档时由 Replay 从关卡初始局面重放得到局面；
+ * 旧版 Java 序列化的存档仍可读取，读入后立即改写为当前格式。
+ * 共有 SLOT_COUNT 个存档槽，每个槽一个日志文件；各槽的摘要和各关的最好成绩记在索引文件中（见 ProgressStore），
+ * 菜单和选关界面显示进度时只需读取索引中的定长记录
  */
 public class GameSave {
-    private static final String SAVE_FILE = "sokoban_save.dat";
+    /**
+     * 存档槽数
+     */
+    public static final int SLOT_COUNT = 8;
+    /**
+     * 记录进度的关卡数，关卡编号为 1 到 LEVEL_COUNT
+     */
+    public static final int LEVEL_COUNT = 50;
+
+    private static final String SAVE_FILE = "sokoban_save.dat";  // 旧版存档，只读，属于第一个存档槽
+    private static final Path PROGRESS_FILE = Paths.get("sokoban_progress.dat");
+    private static final int COMPACT_ENTRIES = 4096;  // 快照之后的日志记录超过此数时重新写入快照
+    private static final boolean SYNC_SNAPSHOTS = true;  // 快照在替换存档文件前 force 到磁盘，快照不频繁，代价很小
+
+    // 后台存档线程，所有文件操作都在这个线程上按提交顺序执行
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "sokoban-save");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ProgressStore PROGRESS = new ProgressStore(PROGRESS_FILE, SLOT_COUNT, LEVEL_COUNT);
+    // 当前存档槽及其日志，只在后台线程上切换；日志除 exists 外只在后台线程上使用
+    private static volatile int slot;
+    private static volatile SaveJournal journal = new SaveJournal(journalFile(0), SYNC_SNAPSHOTS);
+
+    // 等待写入的内容，由 LOCK 保护；两者都为空时后台线程上没有待执行的写入
+    private static final Object LOCK = new Object();
+    private static SaveJournal.Snapshot pendingSnapshot;  // 等待写入的快照，写在 pendingEntries 之前
+    private static byte[] pendingEntries = new byte[64];  // 等待追加的日志记录
+    private static int pendingLength;
+    private static ProgressStore.SlotInfo pendingInfo;    // 等待写入索引的存档槽摘要
+    private static volatile boolean failed;  // 写入失败过，文件内容不可信，下一次保存写入快照
+
+    // 以下字段只在调用线程上访问：文件（含等待写入的内容）已经反映到的局面
+    private static GameLevel savedLevel;     // 为 null 时下一次保存写入快照
+    private static int savedGeneration;      // 对应移动历史的代数
+    private static int savedPosition;        // 对应移动历史中的位置
+    private static int savedDepth;           // 对应位置的步数
+    private static int savedEntries;         // 快照之后的日志记录数
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(GameSave::flush, "sokoban-save-flush"));
+    }
 
     /**
-     * 保存游戏状态
+     * 保存游戏状态，立即返回，不等待写入文件
      * @param game 游戏对象
      */
     public static void saveGame(Game game) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(SAVE_FILE))) {
-
-            GameLevel level = game.getCurrentLevel();
-            SaveData saveData = new SaveData();
-
-            // 保存关卡号
-            saveData.level = level.getLevel();
-
-            // 保存男孩状态
-            saveData.boyX = level.getBoy().x;
-            saveData.boyY = level.getBoy().y;
-            saveData.boyDirection = level.getBoy().currentDirection;
-
-            // 保存箱子状态
-            Box[] boxes = level.getBox();
-            saveData.boxCount = boxes.length;
-            saveData.boxes = new BoxData[boxes.length];
-            for (int i = 0; i < boxes.length; i++) {
-                saveData.boxes[i] = new BoxData();
-                saveData.boxes[i].x = boxes[i].x;
-                saveData.boxes[i].y = boxes[i].y;
-                saveData.boxes[i].isOnHome = boxes[i].isOnHome();
-            }
+        GameLevel level = game.getCurrentLevel();
+        MoveHistory history = level.getHistory();
 
-            // 保存移动历史
-            LinkedList<GameMove> moveStack = level.moveStack;
-            saveData.moveCount = moveStack.size();
-            saveData.moves = new MoveData[moveStack.size()];
-            int i = 0;
-            for (GameMove move : moveStack) {
-                saveData.moves[i] = new MoveData();
-                if (move != null) {
-                    saveData.moves[i].boyX = move.boyX;
-                    saveData.moves[i].boyY = move.boyY;
-                    saveData.moves[i].boyDirection = move.boyDirection;
-                    if (move.moveBox != null) {
-                        saveData.moves[i].hasBox = true;
-                        saveData.moves[i].boxX = move.boxX;
-                        saveData.moves[i].boxY = move.boxY;
-                    }
+        // 同一关卡、同一段历史且日志不长时只追加变化，否则写入快照
+        int[] ops = null;
+        if (level == savedLevel && history.generation() == savedGeneration && !failed) {
+            ops = history.diff(savedPosition, savedDepth);
+            if (ops.length == 0) return;
+            if (savedEntries + ops.length > COMPACT_ENTRIES) ops = null;
+        }
+
+        boolean idle;
+        synchronized (LOCK) {
+            idle = pendingSnapshot == null && pendingLength == 0;
+            if (ops == null) {
+                failed = false;
+                pendingSnapshot = snapshot(level);
+                pendingLength = 0;
+                savedEntries = 0;
+            } else {
+                if (pendingLength + ops.length > pendingEntries.length) {
+                    pendingEntries = Arrays.copyOf(pendingEntries,
+                            Math.max(pendingEntries.length * 2, pendingLength + ops.length));
+                }
+                for (int op : ops) {
+                    pendingEntries[pendingLength++] = op == MoveHistory.UNDO ? SaveJournal.UNDO : (byte) op;
                 }
-                i++;
+                savedEntries += ops.length;
             }
+            pendingInfo = new ProgressStore.SlotInfo(level.getLevel(), level.getStepCount(),
+                    level.getBoxesOnTarget(), level.getBoxCount(), System.currentTimeMillis());
+        }
+        mark(level);
+        // 之前没有等待中的内容时才需要安排一次写入，否则由已安排的写入一并带走
+        if (idle) {
+            WRITER.execute(GameSave::drain);
+        }
+    }
+
+    /**
+     * 等待所有已提交的存档写入文件
+     */
+    public static void flush() {
+        runOnWriter(GameSave::drain);
+    }
 
-            oos.writeObject(saveData);
+    /**
+     * 写入等待中的内容（在后台线程上执行）
+     */
+    private static void drain() {
+        SaveJournal.Snapshot snapshot;
+        byte[] entries;
+        int length;
+        ProgressStore.SlotInfo info;
+        synchronized (LOCK) {
+            snapshot = pendingSnapshot;
+            entries = pendingEntries;
+            length = pendingLength;
+            info = pendingInfo;
+            pendingSnapshot = null;
+            pendingEntries = new byte[entries.length];
+            pendingLength = 0;
+            pendingInfo = null;
+        }
+        try {
+            if (snapshot != null) journal.writeSnapshot(snapshot);
+            if (length > 0) journal.append(entries, length);
         } catch (IOException e) {
+            failed = true;
             System.err.println("保存游戏失败: " + e.getMessage());
+            return;
+        }
+        try {
+            if (info != null) PROGRESS.writeSlot(slot, info);
+            if (snapshot != null) PROGRESS.markPlayed(snapshot.level);
+        } catch (IOException e) {
+            System.err.println("保存进度失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在后台存档线程上执行任务并等待完成，保证与之前提交的写入之间的顺序
+     */
+    private static void runOnWriter(Runnable task) {
+        try {
+            WRITER.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("存档操作失败: " + e.getCause());
+        }
+    }
+
+    /**
+     * 记录文件已经反映到的局面
+     */
+    private static void mark(GameLevel level) {
+        MoveHistory history = level.getHistory();
+        savedLevel = level;
+        savedGeneration = history.generation();
+        savedPosition = history.position();
+        savedDepth = history.size();
+    }
+
+    /**
+     * 复制当前局面作为快照，得到的快照与游戏对象不再共享可变数据
+     */
+    private static SaveJournal.Snapshot snapshot(GameLevel level) {
+        Boy boy = level.getBoy();
+        Box[] boxes = level.getBox();
+        int[] coords = new int[boxes.length * 2];
+        for (int i = 0; i < boxes.length; i++) {
+            coords[i * 2] = boxes[i].x;
+            coords[i * 2 + 1] = boxes[i].y;
         }
+        return new SaveJournal.Snapshot(level.getLevel(), boy.x, boy.y, boy.currentDirection,
+                coords, level.getHistory().toArray());
     }
 
     /**
@@ -74,85 +200,331 @@ public class GameSave {
      * @return 是否成功加载
      */
     public static boolean loadGame(Game game) {
-        File saveFile = new File(SAVE_FILE);
-        if (!saveFile.exists()) {
-            return false;
-        }
+        flush();
+        try {
+            GameLevel level;
+            boolean legacy = false;
+            if (journal.exists()) {
+                level = loadJournal(game);
+            } else if (slot == 0 && new File(SAVE_FILE).exists()) {
+                level = loadLegacy(game);
+                legacy = true;
+            } else {
+                return false;
+            }
 
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(SAVE_FILE))) {
+            // 设置当前关卡
+            game.currentLevel = level;
+            game.resizeWindow();
 
-            SaveData saveData = (SaveData) ois.readObject();
+            if (legacy) migrate(game);
+            return true;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("加载游戏失败: " + e.getMessage());
+            return false;
+        }
+    }
 
-            // 创建新关卡
-            GameLevel level = new GameLevel(game, saveData.level);
+    /**
+     * 读取日志格式的存档：恢复快照局面，再依次重放快照之后的有效移动和撤销
+     * 修复文件（见 SaveJournal.recover）在后台线程上执行，排在已提交的写入之后
+     */
+    private static GameLevel loadJournal(Game game) throws IOException {
+        SaveJournal.Contents contents;
+        try {
+            contents = WRITER.submit(() -> journal.recover()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("读档被中断");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        SaveJournal.Snapshot snapshot = contents.snapshot;
 
-            // 恢复男孩状态
-            level.getBoy().reset(saveData.boyX, saveData.boyY, saveData.boyDirection);
+        GameLevel level = new GameLevel(game, snapshot.level);
+        MoveHistory history = level.getHistory();
+        history.setAll(snapshot.history);
 
-            // 恢复箱子状态
-            Box[] boxes = level.getBox();
-            for (int i = 0; i < boxes.length && i < saveData.boxCount; i++) {
-                boxes[i].moveTo(saveData.boxes[i].x, saveData.boxes[i].y);
-                if (saveData.boxes[i].isOnHome) {
-                    boxes[i].setWin();
-                } else {
-                    boxes[i].setNomal();
+        if (snapshot.boxes == null) {
+            // 日志中的移动和撤销只作用在历史树上，最后沿当前路径重放一次得到局面
+            for (byte entry : contents.entries) {
+                if (entry != SaveJournal.UNDO) {
+                    history.push(entry);
+                } else if (!history.isEmpty()) {
+                    history.pop();
                 }
             }
-
-            // 恢复移动历史
-            level.moveStack.clear();
-            for (int i = 0; i < saveData.moveCount; i++) {
-                MoveData moveData = saveData.moves[i];
-                if (moveData.boyX == 0 && moveData.boyY == 0 && i == 0) {
-                    // 第一个null元素
-                    level.moveStack.add(null);
+            replayHistory(level);
+        } else {
+            // 快照中记录了局面（历史无法重放的旧存档），在该局面上依次执行日志中的移动和撤销
+            restorePosition(level, snapshot.boyX, snapshot.boyY, snapshot.boyDirection, snapshot.boxes);
+            for (byte entry : contents.entries) {
+                if (entry == SaveJournal.UNDO) {
+                    level.previousMove();
                 } else {
-                    Boy boy = new Boy(moveData.boyX, moveData.boyY);
-                    boy.currentDirection = moveData.boyDirection;
-
-                    Box box = null;
-                    if (moveData.hasBox) {
-                        box = new Box(moveData.boxX, moveData.boxY);
-                    }
-
-                    if (box != null) {
-                        level.moveStack.add(GameMove.of(boy, box));
-                    } else {
-                        level.moveStack.add(GameMove.of(boy));
-                    }
+                    level.applyMove(entry);
                 }
             }
+        }
+
+        // 文件内容与读出的局面一致，之后的保存继续追加
+        mark(level);
+        savedEntries = contents.entries.length;
+        return level;
+    }
+
+    /**
+     * 按关卡号和 LURD 移动字符串恢复游戏，例如导入的解法或录像
+     * 移动序列由 Replay 重放，不创建中间对象；读入后撤销、重做都作用在当前关卡的箱子上
+     * @param game 游戏对象
+     * @param levelNumber 关卡编号
+     * @param moves 移动字符串，小写为行走，大写为推动
+     * @return 是否成功加载；移动字符串与关卡不符时返回 false
+     */
+    public static boolean loadMoves(Game game, int levelNumber, String moves) {
+        try {
+            Replay replay = Replay.parse(LevelData.get(levelNumber), moves);
+            GameLevel level = new GameLevel(game, levelNumber);
+            level.getHistory().setAll(replay.toMoves());
+            level.restore(replay.getState(), replay.getFacing());
 
-            // 设置当前关卡
             game.currentLevel = level;
             game.resizeWindow();
-
             return true;
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("加载游戏失败: " + e.getMessage());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("加载移动序列失败: " + e.getMessage());
             return false;
         }
     }
 
+    /**
+     * 从关卡初始局面沿移动历史的当前路径重放，把男孩和箱子放到重放得到的局面
+     */
+    private static void replayHistory(GameLevel level) throws IOException {
+        try {
+            Replay replay = Replay.of(LevelData.get(level.getLevel()), level.getHistory().toArray());
+            level.restore(replay.getState(), replay.getFacing());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("移动历史与关卡不符: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把男孩和箱子放到存档记录的位置
+     * @param coords 箱子坐标，依次为 x0, y0, x1, y1 ...
+     */
+    private static void restorePosition(GameLevel level, int boyX, int boyY, int boyDirection, int[] coords) {
+        MapLayout layout = level.getState().getLayout();
+        BoardState target = new BoardState(layout);
+        for (int i = 0; i + 1 < coords.length; i += 2) {
+            target.addBox(layout.index(coords[i], coords[i + 1]));
+        }
+        target.setPlayer(layout.index(boyX, boyY));
+        level.restore(target, boyDirection);
+    }
+
+    /**
+     * 把刚读入的旧版存档立即改写为当前格式，新文件写入成功后删除旧文件
+     */
+    private static void migrate(Game game) {
+        saveGame(game);  // savedLevel 为 null，写入快照
+        WRITER.execute(() -> {
+            if (!failed) new File(SAVE_FILE).delete();
+        });
+    }
+
+    /**
+     * 读取旧版 Java 序列化的存档
+     */
+    private static GameLevel loadLegacy(Game game) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(
+                new FileInputStream(SAVE_FILE))) {
+
+            SaveData saveData = (SaveData) ois.readObject();
+
+            // 创建新关卡
+            GameLevel level = new GameLevel(game, saveData.level);
+
+            // 恢复男孩和箱子的位置，显示状态按所在格子更新，不使用存档中的 isOnHome
+            int[] coords = new int[saveData.boxCount * 2];
+            for (int i = 0; i < saveData.boxCount; i++) {
+                coords[i * 2] = saveData.boxes[i].x;
+                coords[i * 2 + 1] = saveData.boxes[i].y;
+            }
+            restorePosition(level, saveData.boyX, saveData.boyY, saveData.boyDirection, coords);
+
+            // 恢复移动历史，旧版存档只有 MoveData 列表，转换为移动编码
+            level.getHistory().setAll(saveData.history != null
+                    ? saveData.history
+                    : fromLegacyMoves(saveData));
+
+            savedLevel = null;
+            return level;
+        }
+    }
+
+    /**
+     * 把旧版存档中的 MoveData 列表转换为移动编码
+     * 旧版每一步记录移动前男孩的坐标和朝向，第一项是全零的占位项；
+     * 移动方向由相邻两步的男孩坐标（最后一步与存档中的男孩坐标）之差得到
+     */
+    private static int[] fromLegacyMoves(SaveData saveData) {
+        int first = 0;
+        if (saveData.moveCount > 0 && saveData.moves[0].boyX == 0 && saveData.moves[0].boyY == 0) {
+            first = 1;  // 跳过占位项
+        }
+        int[] history = new int[Math.max(0, saveData.moveCount - first)];
+        for (int i = first; i < saveData.moveCount; i++) {
+            MoveData move = saveData.moves[i];
+            int nextX = i + 1 < saveData.moveCount ? saveData.moves[i + 1].boyX : saveData.boyX;
+            int nextY = i + 1 < saveData.moveCount ? saveData.moves[i + 1].boyY : saveData.boyY;
+            int direction;
+            if (nextY < move.boyY) direction = Direction.UP;
+            else if (nextX > move.boyX) direction = Direction.RIGHT;
+            else if (nextY > move.boyY) direction = Direction.DOWN;
+            else direction = Direction.LEFT;
+            history[i - first] = MoveHistory.encode(direction, move.hasBox, move.boyDirection);
+        }
+        return history;
+    }
+
     /**
      * 检查是否存在存档文件
      * @return 是否存在存档
      */
     public static boolean hasSave() {
-        return new File(SAVE_FILE).exists();
+        flush();
+        return journal.exists() || (slot == 0 && new File(SAVE_FILE).exists());
     }
 
     /**
      * 删除存档文件
      */
     public static void deleteSave() {
-        new File(SAVE_FILE).delete();
+        // 丢弃尚未写入的内容，删除排在已开始的写入之后，之后的保存重新写入快照
+        synchronized (LOCK) {
+            pendingSnapshot = null;
+            pendingLength = 0;
+            pendingInfo = null;
+        }
+        savedLevel = null;
+        runOnWriter(() -> {
+            try {
+                journal.delete();
+                PROGRESS.writeSlot(slot, null);
+            } catch (IOException e) {
+                System.err.println("删除存档失败: " + e.getMessage());
+            }
+            if (slot == 0) new File(SAVE_FILE).delete();
+        });
+    }
+
+    /**
+     * 获取当前存档槽
+     * @return 存档槽，从 0 开始
+     */
+    public static int getSlot() {
+        return slot;
+    }
+
+    /**
+     * 切换存档槽，之后的保存、读档和删档都针对新的存档槽
+     * 切换前先写完当前槽等待中的内容；切换后的第一次保存写入完整快照
+     * @param newSlot 存档槽，从 0 开始
+     */
+    public static void setSlot(int newSlot) {
+        if (newSlot < 0 || newSlot >= SLOT_COUNT) throw new IllegalArgumentException("存档槽: " + newSlot);
+        flush();
+        savedLevel = null;
+        runOnWriter(() -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("关闭存档失败: " + e.getMessage());
+            }
+            journal = new SaveJournal(journalFile(newSlot), SYNC_SNAPSHOTS);
+            slot = newSlot;
+        });
+    }
+
+    /**
+     * 最近保存过的存档槽，只读取索引中的存档槽表
+     * @return 存档槽，所有槽都为空时返回当前存档槽
+     */
+    public static int latestSlot() {
+        int latest = slot;
+        long latestTime = Long.MIN_VALUE;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            ProgressStore.SlotInfo info = getSlotInfo(i);
+            if (info != null && info.savedAt > latestTime) {
+                latest = i;
+                latestTime = info.savedAt;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * 读取存档槽摘要，不读取存档本身
+     * @param index 存档槽，从 0 开始
+     * @return 摘要，空槽或读取失败时返回 null
+     */
+    public static ProgressStore.SlotInfo getSlotInfo(int index) {
+        try {
+            return PROGRESS.readSlot(index);
+        } catch (IOException e) {
+            System.err.println("读取进度失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 读取所有关卡的进度
+     * @return 下标 i 为第 i+1 关的进度，读取失败时返回空数组
+     */
+    public static ProgressStore.LevelProgress[] getLevelProgress() {
+        try {
+            return PROGRESS.readLevels();
+        } catch (IOException e) {
+            System.err.println("读取进度失败: " + e.getMessage());
+            return new ProgressStore.LevelProgress[0];
+        }
+    }
+
+    /**
+     * 记录当前关卡通关，保留最少步数和最少推动次数；写入在后台线程上进行
+     * @param level 刚通关的关卡
+     */
+    public static void levelCompleted(GameLevel level) {
+        int number = level.getLevel();
+        int steps = level.getStepCount();
+        int pushes = countPushes(level.getHistory().toArray());
+        WRITER.execute(() -> {
+            try {
+                PROGRESS.markSolved(number, steps, pushes);
+            } catch (IOException e) {
+                System.err.println("保存进度失败: " + e.getMessage());
+            }
+        });
+    }
+
+    private static int countPushes(int[] moves) {
+        int pushes = 0;
+        for (int move : moves) {
+            if (MoveHistory.isPush(move)) pushes++;
+        }
+        return pushes;
+    }
+
+    /**
+     * 存档槽对应的日志文件，第一个槽沿用原来的文件名
+     */
+    private static Path journalFile(int index) {
+        return Paths.get(index == 0 ? "sokoban_save.journal" : "sokoban_save_" + (index + 1) + ".journal");
     }
 
     /**
-     * 存档数据结构
+     * 旧版存档数据结构，只用于读取
      */
     private static class SaveData implements Serializable {
         private static final long serialVersionUID = 1L;
@@ -162,7 +534,8 @@ public class GameSave {
         int boxCount;
         BoxData[] boxes;
         int moveCount;
-        MoveData[] moves;
+        MoveData[] moves;   // 最早的移动历史格式，之后的存档中为空
+        int[] history;      // 移动编码（见 MoveHistory），最早的存档中为 null
     }
 
     /**
@@ -0,0 +1,271 @@
+package com.sokoban.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * 存档槽和各关进度的索引文件
+ * 文件（大端序）由文件头和两张定长记录表组成，任意一条记录都可以按下标算出位置直接读写：
+ *   文件头 16 字节：魔数 "SKPS"、版本、存档槽数、关卡数
+ *   存档槽表：每个槽 24 字节，关卡号（0 表示空槽）、步数、目标点上的箱子数、箱子总数、保存时间（毫秒）、CRC32C
+ *   关卡表：每关 16 字节，状态（PLAYED/SOLVED 位）、通关最少步数、通关最少推动次数、CRC32C
+ * 存档内容本身仍在各槽的日志文件中（见 SaveJournal），这里只保存菜单和选关界面需要的摘要，
+ * 显示进度时不需要读取或解析任何存档。校验失败的记录按空记录处理。
+ * 方法都是同步的，可以在事件分发线程读取的同时由后台存档线程写入
+ */
+public final class ProgressStore implements Closeable {
+    /**
+     * 关卡状态位：玩过
+     */
+    public static final int PLAYED = 1;
+    /**
+     * 关卡状态位：通关
+     */
+    public static final int SOLVED = 2;
+
+    private static final int MAGIC = 0x534B5053;  // "SKPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 24;
+    private static final int LEVEL_BYTES = 16;
+
+    /**
+     * 存档槽摘要
+     */
+    public static final class SlotInfo {
+        public final int level;           // 关卡号
+        public final int steps;           // 当前步数
+        public final int boxesOnTarget;   // 目标点上的箱子数
+        public final int boxCount;        // 箱子总数
+        public final long savedAt;        // 保存时间（毫秒）
+
+        public SlotInfo(int level, int steps, int boxesOnTarget, int boxCount, long savedAt) {
+            this.level = level;
+            this.steps = steps;
+            this.boxesOnTarget = boxesOnTarget;
+            this.boxCount = boxCount;
+            this.savedAt = savedAt;
+        }
+    }
+
+    /**
+     * 单个关卡的进度
+     */
+    public static final class LevelProgress {
+        public final int flags;        // PLAYED、SOLVED 的组合
+        public final int bestSteps;    // 通关最少步数，未通关时为 0
+        public final int bestPushes;   // 通关最少推动次数，未通关时为 0
+
+        LevelProgress(int flags, int bestSteps, int bestPushes) {
+            this.flags = flags;
+            this.bestSteps = bestSteps;
+            this.bestPushes = bestPushes;
+        }
+
+        public boolean isPlayed() {
+            return (flags & PLAYED) != 0;
+        }
+
+        public boolean isSolved() {
+            return (flags & SOLVED) != 0;
+        }
+    }
+
+    private static final LevelProgress NONE = new LevelProgress(0, 0, 0);
+
+    private final Path path;
+    private final int slots;
+    private final int levels;
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;    // 第一次访问时打开
+
+    /**
+     * @param path 索引文件
+     * @param slots 存档槽数
+     * @param levels 关卡数，关卡编号为 1 到 levels
+     */
+    public ProgressStore(Path path, int slots, int levels) {
+        this.path = path;
+        this.slots = slots;
+        this.levels = levels;
+    }
+
+    /**
+     * 读取存档槽摘要
+     * @param slot 存档槽，从 0 开始
+     * @return 摘要，空槽返回 null
+     * @throws IOException 文件读取异常
+     */
+    public synchronized SlotInfo readSlot(int slot) throws IOException {
+        ByteBuffer buf = read(slotOffset(slot), SLOT_BYTES);
+        if (!verify(buf) || buf.getInt(0) == 0) return null;
+        return new SlotInfo(buf.getInt(0), buf.getInt(4), buf.getShort(8), buf.getShort(10), buf.getLong(12));
+    }
+
+    /**
+     * 写入存档槽摘要
+     * @param slot 存档槽，从 0 开始
+     * @param info 摘要，为 null 时清空该槽
+     * @throws IOException 文件写入异常
+     */
+    public synchronized void writeSlot(int slot, SlotInfo info) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SLOT_BYTES);
+        if (info != null) {
+            buf.putInt(info.level).putInt(info.steps)
+                    .putShort((short) info.boxesOnTarget).putShort((short) info.boxCount)
+                    .putLong(info.savedAt);
+        }
+        write(slotOffset(slot), seal(buf));
+    }
+
+    /**
+     * 读取单个关卡的进度
+     * @param level 关卡编号
+     * @return 进度，超出范围或没有记录时各项为 0
+     * @throws IOException 文件读取异常
+     */
+    public synchronized LevelProgress readLevel(int level) throws IOException {
+        if (level < 1 || level > levels) return NONE;
+        return toLevel(read(levelOffset(level), LEVEL_BYTES));
+    }
+
+    /**
+     * 一次读取整张关卡表
+     * @return 下标 i 为第 i+1 关的进度
+     * @throws IOException 文件读取异常
+     */
+    public synchronized LevelProgress[] readLevels() throws IOException {
+        ByteBuffer table = read(levelOffset(1), levels * LEVEL_BYTES);
+        LevelProgress[] result = new LevelProgress[levels];
+        for (int i = 0; i < levels; i++) {
+            result[i] = toLevel(table.slice(i * LEVEL_BYTES, LEVEL_BYTES));
+        }
+        return result;
+    }
+
+    /**
+     * 记录玩过某一关，已有记录时不写文件
+     * @param level 关卡编号
+     * @throws IOException 文件读写异常
+     */
+    public synchronized void markPlayed(int level) throws IOException {
+        if (level < 1 || level > levels) return;
+        LevelProgress p = readLevel(level);
+        if (p.isPlayed()) return;
+        writeLevel(level, new LevelProgress(p.flags | PLAYED, p.bestSteps, p.bestPushes));
+    }
+
+    /**
+     * 记录一次通关，保留步数和推动次数的最好成绩
+     * @param level 关卡编号
+     * @param steps 本次步数
+     * @param pushes 本次推动次数
+     * @throws IOException 文件读写异常
+     */
+    public synchronized void markSolved(int level, int steps, int pushes) throws IOException {
+        if (level < 1 || level > levels) return;
+        LevelProgress p = readLevel(level);
+        boolean first = !p.isSolved();
+        writeLevel(level, new LevelProgress(p.flags | PLAYED | SOLVED,
+                first ? steps : Math.min(steps, p.bestSteps),
+                first ? pushes : Math.min(pushes, p.bestPushes)));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void writeLevel(int level, LevelProgress p) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(LEVEL_BYTES);
+        buf.putInt(p.flags).putInt(p.bestSteps).putInt(p.bestPushes);
+        write(levelOffset(level), seal(buf));
+    }
+
+    private LevelProgress toLevel(ByteBuffer buf) {
+        return verify(buf) ? new LevelProgress(buf.getInt(0), buf.getInt(4), buf.getInt(8)) : NONE;
+    }
+
+    private long slotOffset(int slot) {
+        if (slot < 0 || slot >= slots) throw new IndexOutOfBoundsException("存档槽: " + slot);
+        return HEADER_BYTES + (long) slot * SLOT_BYTES;
+    }
+
+    private long levelOffset(int level) {
+        return HEADER_BYTES + (long) slots * SLOT_BYTES + (long) (level - 1) * LEVEL_BYTES;
+    }
+
+    /**
+     * 在记录末尾写入前面内容的校验和
+     */
+    private ByteBuffer seal(ByteBuffer buf) {
+        int end = buf.capacity() - 4;
+        buf.putInt(end, checksum(buf, end));
+        buf.position(0);
+        return buf;
+    }
+
+    /**
+     * 全零的记录是从未写过的空记录，同样视为有效
+     */
+    private boolean verify(ByteBuffer buf) {
+        int end = buf.capacity() - 4;
+        int stored = buf.getInt(end);
+        if (stored == checksum(buf, end)) return true;
+        for (int i = 0; i < buf.capacity(); i++) {
+            if (buf.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    private int checksum(ByteBuffer buf, int length) {
+        crc.reset();
+        crc.update(buf.slice(0, length));
+        return (int) crc.getValue();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        FileChannel ch = channel();
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) break;  // 文件比表短时其余部分按 0 处理
+        }
+        buf.clear();
+        return buf;
+    }
+
+    private void write(long position, ByteBuffer buf) throws IOException {
+        FileChannel ch = channel();
+        while (buf.hasRemaining()) {
+            ch.write(buf, position + buf.position());
+        }
+    }
+
+    /**
+     * 打开索引文件，文件不存在或文件头与当前布局不符时重新建立空的索引
+     */
+    private FileChannel channel() throws IOException {
+        if (channel != null) return channel;
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ch.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(8) != slots || header.getInt(12) != levels) {
+            ch.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).putInt(slots).putInt(levels).flip();
+            while (header.hasRemaining()) ch.write(header, header.position());
+        }
+        channel = ch;
+        return ch;
+    }
+}
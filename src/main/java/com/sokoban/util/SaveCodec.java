@@ -0,0 +1,155 @@
+package com.sokoban.util;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import com.sokoban.model.BoardState;
+import com.sokoban.model.LevelData;
+import com.sokoban.model.MoveHistory;
+import com.sokoban.model.Replay;
+import com.sokoban.model.map.MapLayout;
+
+/**
+ * 存档快照的二进制编码
+ * 版本 4（当前）：各字段为无符号变长整数（每字节 7 位，最高位表示后面还有字节）：
+ *   关卡号、标志位；标志位含 HAS_POSITION 时接着是男孩坐标和朝向、箱子数、各箱子坐标；
+ *   然后是移动步数和方向流，每步 2 位（方向减一），每字节 4 步，先走的在低位。
+ *   局面通常不写入，读取时由 Replay 从关卡初始局面沿方向流重放得到，是否推动箱子和移动前的朝向也一并还原；
+ *   只有移动历史无法重放时（例如来自损坏的旧存档）才写入局面，此时不写入历史。
+ * 更早的版本 2、3 不再读取；Java 序列化的旧存档由 GameSave 读入后改写为当前格式
+ */
+final class SaveCodec {
+    /**
+     * 当前的编码版本
+     */
+    static final int VERSION = 4;
+
+    private static final int HAS_POSITION = 1;  // 标志位：快照中写入了男孩和箱子的位置
+
+    private SaveCodec() {
+    }
+
+    /**
+     * 编码快照
+     * @param snapshot 快照，必须带有局面
+     * @return 编码结果
+     */
+    static byte[] encode(SaveJournal.Snapshot snapshot) {
+        boolean replayable = replays(snapshot);
+        int[] history = replayable ? snapshot.history : new int[0];
+        ByteBuffer buf = ByteBuffer.allocate(5 * (8 + snapshot.boxes.length) + (history.length + 3) / 4);
+        putVarint(buf, snapshot.level);
+        putVarint(buf, replayable ? 0 : HAS_POSITION);
+        if (!replayable) putPosition(buf, snapshot);
+        putDirections(buf, history);
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+
+    /**
+     * 解码快照
+     * @param version 编码版本
+     * @param buf 快照内容，读取到末尾
+     * @return 快照，没有写入局面时 boxes 为 null
+     * @throws IOException 版本不支持、内容不完整，或移动历史无法在关卡中重放
+     */
+    static SaveJournal.Snapshot decode(int version, ByteBuffer buf) throws IOException {
+        try {
+            switch (version) {
+                case VERSION:
+                    return decodeCompact(buf);
+                default:
+                    throw new IOException("不支持的存档版本: " + version);
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("存档内容不完整", e);
+        }
+    }
+
+    private static SaveJournal.Snapshot decodeCompact(ByteBuffer buf) throws IOException {
+        int level = getVarint(buf);
+        boolean position = (getVarint(buf) & HAS_POSITION) != 0;
+        int boyX = -1, boyY = -1, boyDirection = 0;
+        int[] boxes = null;
+        if (position) {
+            boyX = getVarint(buf);
+            boyY = getVarint(buf);
+            boyDirection = getVarint(buf);
+            boxes = new int[getVarint(buf) * 2];
+            for (int i = 0; i < boxes.length; i++) boxes[i] = getVarint(buf);
+        }
+        int[] directions = new int[getVarint(buf)];
+        if ((directions.length + 3) / 4 != buf.remaining()) throw new IOException("存档内容不完整");
+        int b = 0;
+        for (int i = 0; i < directions.length; i++) {
+            if ((i & 3) == 0) b = buf.get();
+            directions[i] = ((b >>> ((i & 3) * 2)) & 3) + 1;
+        }
+
+        // 沿方向流重放，还原是否推动和移动前朝向
+        Replay replay = new Replay(LevelData.get(level));
+        for (int direction : directions) {
+            if (replay.append(direction) == BoardState.MOVE_BLOCKED) throw new IOException("移动历史与关卡不符");
+        }
+        return new SaveJournal.Snapshot(level, boyX, boyY, boyDirection, boxes, replay.toMoves());
+    }
+
+    /**
+     * 检查移动历史能否从关卡初始局面重放，每一步是否推动与记录一致，且重放得到的局面与快照相同
+     */
+    private static boolean replays(SaveJournal.Snapshot snapshot) {
+        Replay replay;
+        try {
+            replay = Replay.of(LevelData.get(snapshot.level), snapshot.history);
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+        BoardState state = replay.getState();
+        MapLayout layout = replay.getLayout();
+        if (state.getPlayer() != layout.index(snapshot.boyX, snapshot.boyY)) return false;
+        for (int i = 0; i + 1 < snapshot.boxes.length; i += 2) {
+            if (!state.hasBox(layout.index(snapshot.boxes[i], snapshot.boxes[i + 1]))) return false;
+        }
+        return state.getBoxCount() * 2 == snapshot.boxes.length;
+    }
+
+    private static void putPosition(ByteBuffer buf, SaveJournal.Snapshot snapshot) {
+        putVarint(buf, snapshot.boyX);
+        putVarint(buf, snapshot.boyY);
+        putVarint(buf, snapshot.boyDirection);
+        putVarint(buf, snapshot.boxes.length / 2);
+        for (int c : snapshot.boxes) putVarint(buf, c);
+    }
+
+    private static void putDirections(ByteBuffer buf, int[] history) {
+        putVarint(buf, history.length);
+        for (int i = 0; i < history.length; i += 4) {
+            int b = 0;
+            for (int k = 0; k < 4 && i + k < history.length; k++) {
+                b |= (MoveHistory.direction(history[i + k]) - 1) << (k * 2);
+            }
+            buf.put((byte) b);
+        }
+    }
+
+    private static void putVarint(ByteBuffer buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buf) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buf.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("变长整数过长");
+    }
+}
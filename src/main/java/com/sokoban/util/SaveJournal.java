@@ -0,0 +1,244 @@
+package com.sokoban.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * 追加式存档日志
+ * 文件（大端序）由文件头、一个快照记录和其后追加的日志记录组成：
+ *   文件头：魔数 "SKJN"、版本
+ *   快照记录：长度、内容、CRC32C；内容为关卡号和移动历史（必要时含男孩和箱子的坐标），编码见 SaveCodec，
+ *            文件头中的版本即快照的编码版本
+ *   日志记录：条数（1-255）、每条 1 字节、CRC32C（覆盖条数和各条）；
+ *            每条为在快照局面之后走的一步（移动编码，见 MoveHistory）或 UNDO（撤销一步）
+ * 每次保存只需要在文件末尾追加一条日志记录，与已经走过的步数无关；
+ * 日志变长后由调用方重新写入快照（压缩），读档时先恢复快照再依次重放日志。
+ *
+ * 快照先写入临时文件，可选地 force 到磁盘，再原子地替换存档文件，因此存档文件中的快照总是完整的；
+ * 日志记录直接追加且不 force，进程崩溃最多丢失最后几条，读档时从第一条校验失败的记录处截断。
+ * 本类不是线程安全的，由 GameSave 的后台存档线程独占使用
+ */
+final class SaveJournal implements Closeable {
+    /**
+     * 日志中表示撤销一步的记录
+     */
+    static final byte UNDO = (byte) 0xFF;
+
+    private static final int MAGIC = 0x534B4A4E;  // "SKJN"
+    private static final int VERSION = SaveCodec.VERSION;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_ENTRIES = 255;
+
+    /**
+     * 存档快照，创建后不再修改，可以在线程之间传递
+     */
+    static final class Snapshot {
+        final int level;
+        final int boyX, boyY, boyDirection;
+        final int[] boxes;      // 箱子坐标，依次为 x0, y0, x1, y1 ...；为 null 时局面由移动历史重放得到
+        final int[] history;    // 从初始局面到快照局面的移动编码
+
+        Snapshot(int level, int boyX, int boyY, int boyDirection, int[] boxes, int[] history) {
+            this.level = level;
+            this.boyX = boyX;
+            this.boyY = boyY;
+            this.boyDirection = boyDirection;
+            this.boxes = boxes;
+            this.history = history;
+        }
+    }
+
+    /**
+     * 从文件读出的存档：快照及其后的日志记录
+     */
+    static final class Contents {
+        final Snapshot snapshot;
+        final byte[] entries;
+
+        private Contents(Snapshot snapshot, byte[] entries) {
+            this.snapshot = snapshot;
+            this.entries = entries;
+        }
+    }
+
+    private final Path path;
+    private final Path temp;        // 写快照用的临时文件，与存档文件在同一目录
+    private final boolean sync;     // 替换存档文件前是否把快照 force 到磁盘
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;    // 追加日志用的通道，第一次追加时打开
+
+    /**
+     * @param path 存档文件
+     * @param sync 写快照时是否 force 到磁盘；日志记录从不 force
+     */
+    SaveJournal(Path path, boolean sync) {
+        this.path = path;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.sync = sync;
+    }
+
+    /**
+     * 检查是否存在存档，包括尚未替换存档文件的完整临时快照
+     * @return 是否存在
+     */
+    boolean exists() {
+        return Files.exists(path) || Files.exists(temp);
+    }
+
+    /**
+     * 用新的快照替换整个文件，之前的日志记录一并丢弃
+     * @param snapshot 快照
+     * @throws IOException 文件写入异常
+     */
+    void writeSnapshot(Snapshot snapshot) throws IOException {
+        close();
+        byte[] payload = SaveCodec.encode(snapshot);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + 4 + payload.length + 4);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(payload.length).put(payload);
+        buf.putInt(checksum(payload, 0, payload.length));
+        buf.flip();
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) out.write(buf);
+            if (sync) out.force(true);
+        }
+        replace(temp, path);
+    }
+
+    /**
+     * 在文件末尾追加日志记录，每 255 条组成一个带校验的记录
+     * @param entries 日志
+     * @param length 条数
+     * @throws IOException 文件写入异常
+     */
+    void append(byte[] entries, int length) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        int records = (length + MAX_RECORD_ENTRIES - 1) / MAX_RECORD_ENTRIES;
+        ByteBuffer buf = ByteBuffer.allocate(length + records * 5);
+        for (int off = 0; off < length; off += MAX_RECORD_ENTRIES) {
+            int n = Math.min(MAX_RECORD_ENTRIES, length - off);
+            int start = buf.position();
+            buf.put((byte) n).put(entries, off, n);
+            buf.putInt(checksum(buf.array(), start, n + 1));
+        }
+        buf.flip();
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    /**
+     * 删除存档文件
+     * @throws IOException 文件删除异常
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(temp);
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * 读取存档，必要时先修复文件：
+     * 完整的临时快照说明上次在替换存档文件前中断，它比存档文件新，直接用它替换存档文件；
+     * 不完整的临时快照直接删除；存档文件末尾校验失败或不完整的日志记录被截断，之后的追加接在有效记录后面
+     * @return 快照和有效的日志记录
+     * @throws IOException 文件读取异常，或存档文件中的快照已损坏
+     */
+    Contents recover() throws IOException {
+        close();
+        if (Files.exists(temp)) {
+            if (isComplete(temp)) {
+                replace(temp, path);
+            } else {
+                Files.delete(temp);
+            }
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        Snapshot snapshot = parseSnapshot(buf);
+        if (snapshot == null) throw new IOException("存档文件已损坏");
+
+        byte[] entries = new byte[buf.remaining()];
+        int count = 0;
+        while (buf.remaining() >= 5) {
+            int start = buf.position();
+            int n = buf.get(start) & 0xFF;
+            if (n == 0 || buf.remaining() < n + 5 || buf.getInt(start + n + 1) != checksum(buf.array(), start, n + 1)) {
+                break;
+            }
+            buf.position(start + 1);
+            buf.get(entries, count, n);
+            buf.getInt();
+            count += n;
+        }
+        if (buf.hasRemaining()) {
+            // 最后一次追加没有写完，截断到最后一条有效记录
+            try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                out.truncate(buf.position());
+            }
+        }
+        return new Contents(snapshot, Arrays.copyOf(entries, count));
+    }
+
+    /**
+     * 解析文件头和快照记录，缓冲区位置移到快照之后
+     * 只读取当前版本的快照，其他版本由 SaveCodec.decode 报告不支持
+     * @return 快照，文件头或快照记录不完整、校验失败时返回 null
+     */
+    private Snapshot parseSnapshot(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < HEADER_BYTES + 8 || buf.getInt() != MAGIC) return null;
+        int version = buf.getInt();
+        int length = buf.getInt();
+        int start = buf.position();
+        if (length < 0 || length > buf.remaining() - 4
+                || buf.getInt(start + length) != checksum(buf.array(), start, length)) {
+            return null;
+        }
+        ByteBuffer payload = buf.slice(start, length);
+        buf.position(start + length + 4);
+        return SaveCodec.decode(version, payload);
+    }
+
+    private boolean isComplete(Path file) throws IOException {
+        try {
+            return parseSnapshot(ByteBuffer.wrap(Files.readAllBytes(file))) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private int checksum(byte[] data, int offset, int length) {
+        crc.reset();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 原子地用 source 替换 target，文件系统不支持原子移动时退回普通替换
+     */
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
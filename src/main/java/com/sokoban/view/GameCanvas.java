@@ -11,9 +11,13 @@ import java.awt.geom.RoundRectangle2D;
 
 import javax.swing.JComponent;
 
+import com.sokoban.model.BoardState;
+import com.sokoban.model.Direction;
 import com.sokoban.model.Game;
 import com.sokoban.model.GameLevel;
+import com.sokoban.model.map.GameCell;
 import com.sokoban.model.map.GameMap;
+import com.sokoban.solver.HintService;
 
 /**
  * GameCanvas类，继承自JComponent，用于绘制游戏画布
@@ -22,6 +26,11 @@ import com.sokoban.model.map.GameMap;
 public class GameCanvas extends JComponent {
     private final Game game;
 
+    // 当前显示的提示，只在关卡和局面都与请求时一致时绘制
+    private GameLevel hintLevel;
+    private BoardState hintState;
+    private HintService.Hint hint;
+
     // 定义UI配色方案
     private static final Color BG_COLOR_START = new Color(43, 45, 66); // 深蓝灰
     private static final Color BG_COLOR_END = new Color(20, 21, 31);   // 更深的底色
@@ -79,6 +88,7 @@ public class GameCanvas extends JComponent {
 
             // 绘制实际地图元素
             currentLevel.paint(g);
+            drawHint(g2d, currentLevel);
 
             // 绘制地图边框
             g2d.setColor(new Color(255, 255, 255, 50));
@@ -93,16 +103,55 @@ public class GameCanvas extends JComponent {
         }
     }
 
+    /**
+     * 显示提示：高亮要推的箱子和它被推到的格子
+     * 局面改变后提示自动失效，不需要显式清除
+     */
+    public void showHint(GameLevel level, BoardState state, HintService.Hint hint) {
+        this.hintLevel = level;
+        this.hintState = state;
+        this.hint = hint;
+        repaint();
+    }
+
+    /**
+     * 绘制提示高亮 (在地图坐标系中)
+     */
+    private void drawHint(Graphics2D g2d, GameLevel level) {
+        if (hint == null || hint.boxX < 0) return;
+        if (level != hintLevel || !hintState.equals(level.getState())) {
+            hint = null;
+            return;
+        }
+        int size = GameCell.width;
+        int dx = 0, dy = 0;
+        switch (hint.direction) {
+            case Direction.UP: dy = -1; break;
+            case Direction.RIGHT: dx = 1; break;
+            case Direction.DOWN: dy = 1; break;
+            case Direction.LEFT: dx = -1; break;
+        }
+        g2d.setStroke(new BasicStroke(3));
+        g2d.setColor(GameMenuBar.NEON_CYAN);
+        g2d.drawRect(hint.boxX * size + 1, hint.boxY * size + 1, size - 2, size - 2);
+        g2d.setColor(GameMenuBar.NEON_PINK);
+        g2d.drawRect((hint.boxX + dx) * size + 4, (hint.boxY + dy) * size + 4, size - 8, size - 8);
+        // 箭头：从箱子中心指向目的格子中心
+        int cx = hint.boxX * size + size / 2, cy = hint.boxY * size + size / 2;
+        g2d.drawLine(cx, cy, cx + dx * size, cy + dy * size);
+    }
+
     /**
      * 绘制抬头显示信息 (关卡、步数)
      */
     private void drawHUD(Graphics2D g2d, GameLevel level) {
         String levelText = "Level " + level.getLevel();
         String stepText = "Steps: " + level.getStepCount();
+        String boxText = "Boxes: " + level.getBoxesOnTarget() + " / " + level.getBoxCount();
 
         // 绘制左上角的关卡信息卡片
         int cardW = 140;
-        int cardH = 70;
+        int cardH = 92;
         int cardX = 20;
         int cardY = 20;
 
@@ -112,7 +161,7 @@ public class GameCanvas extends JComponent {
 
         // 装饰线条
         g2d.setColor(ACCENT_COLOR);
-        g2d.fillRect(cardX, cardY + 15, 4, 40);
+        g2d.fillRect(cardX, cardY + 15, 4, 62);
 
         // 文字
         g2d.setColor(TEXT_COLOR);
@@ -122,14 +171,15 @@ public class GameCanvas extends JComponent {
         g2d.setFont(INFO_FONT);
         g2d.setColor(new Color(200, 200, 200));
         g2d.drawString(stepText, cardX + 15, cardY + 55);
+        g2d.drawString(boxText, cardX + 15, cardY + 77);
 
         // 底部操作提示
         if (level.getLevel() == 1) {
-            String hint = "按 R 重玩  |  按 U 撤销  |  方向键移动";
+            String tip = "按 R 重玩  |  按 U 撤销  |  按 Y 重做  |  按 H 提示  |  方向键移动";
             g2d.setFont(HINT_FONT);
             g2d.setColor(new Color(255, 255, 255, 150));
-            int hintW = g2d.getFontMetrics().stringWidth(hint);
-            g2d.drawString(hint, (getWidth() - hintW) / 2, getHeight() - 20);
+            int hintW = g2d.getFontMetrics().stringWidth(tip);
+            g2d.drawString(tip, (getWidth() - hintW) / 2, getHeight() - 20);
         }
     }
 }
\ No newline at end of file
@@ -38,13 +38,13 @@ public class GameMenuBar extends JMenuBar implements ActionListener {
 
         // 2. 初始化菜单
         add(createNeonMenu("游戏 (GAME)",
-                new String[]{"回退", "重玩当前关卡", "重新开始游戏", "-", "保存游戏", "-", "退出"},
-                new String[]{"previousMove", "replayLevel", "restartGame", "-", "saveGame", "-", "exit"}
+                new String[]{"回退", "重做", "切换分支", "提示", "重玩当前关卡", "重新开始游戏", "-", "保存游戏", "存档槽", "-", "退出"},
+                new String[]{"previousMove", "nextMove", "switchBranch", "hint", "replayLevel", "restartGame", "-", "saveGame", "selectSlot", "-", "exit"}
         ));
 
         add(createNeonMenu("关卡 (LEVEL)",
-                new String[]{"上一关", "选择关卡"},
-                new String[]{"previousLevel", "selectLevel"}
+                new String[]{"上一关", "选择关卡", "导入步骤"},
+                new String[]{"previousLevel", "selectLevel", "importMoves"}
         ));
 
         add(createNeonMenu("帮助 (HELP)",
@@ -206,6 +206,18 @@ public class GameMenuBar extends JMenuBar implements ActionListener {
                 game.previousMove();
                 break;
 
+            case "nextMove":      // 重做
+                game.nextMove();
+                break;
+
+            case "switchBranch":  // 切换分支
+                game.switchBranch();
+                break;
+
+            case "hint":          // 提示
+                game.win.requestHint();
+                break;
+
             case "replayLevel":   // 重玩
                 game.reloadLevel();
                 break;
@@ -216,9 +228,14 @@ public class GameMenuBar extends JMenuBar implements ActionListener {
 
             case "saveGame":      // 保存
                 GameSave.saveGame(game);
+                GameSave.flush();
                 NeonDialogUI.showMessage(game.win, "游戏进度已保存", "SYSTEM SAVED");
                 break;
 
+            case "selectSlot":    // 存档槽
+                game.selectSlot();
+                break;
+
             case "exit":          // 退出
                 System.exit(0);
                 break;
@@ -235,6 +252,10 @@ public class GameMenuBar extends JMenuBar implements ActionListener {
                 game.selectLevel();
                 break;
 
+            case "importMoves":   // 导入步骤
+                game.importMoves();
+                break;
+
             default:
                 System.out.println("未知的菜单命令: " + cmd);
                 break;
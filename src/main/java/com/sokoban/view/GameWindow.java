@@ -5,9 +5,14 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
+import com.sokoban.model.BoardState;
 import com.sokoban.model.Direction;
 import com.sokoban.model.Game;
+import com.sokoban.model.GameLevel;
+import com.sokoban.solver.HintService;
+import com.sokoban.solver.SolverResult;
 import com.sokoban.util.GameSave;
 
 /**
@@ -18,6 +23,7 @@ public class GameWindow extends JFrame {
     public final GameCanvas canvas;    // 游戏画布，用于绘制游戏界面
     public final GameMenuBar menuBar;  // 游戏菜单栏，包含游戏选项
     public final Game game;            // 游戏逻辑对象，处理游戏核心逻辑
+    private final HintService hints = new HintService();  // 后台提示服务
 
     /**
      * 构造函数，初始化游戏窗口
@@ -101,14 +107,63 @@ public class GameWindow extends JFrame {
                 // U键撤销上一步
                 win.game.previousMove();
                 break;
+            case KeyEvent.VK_Y:
+                // Y键重做
+                win.game.nextMove();
+                break;
+            case KeyEvent.VK_B:
+                // B键切换重做分支
+                win.game.switchBranch();
+                break;
+            case KeyEvent.VK_H:
+                // H键提示下一步
+                win.requestHint();
+                break;
         }
     }
 
-    private void handleDirectionPressed(int direction) {
-        game.getCurrentLevel().handleKeyPress(direction);
+    /**
+     * 请求当前局面的提示
+     * 求解在后台线程进行，不阻塞事件分发线程；结果回到事件分发线程后，
+     * 只有局面仍未改变时才显示
+     */
+    public void requestHint() {
+        GameLevel level = game.getCurrentLevel();
+        if (level.isDeadlocked()) {
+            NeonDialogUI.showToast(this, "有箱子已被卡死，无法给出提示<br>按 U 撤销或按 R 重玩", "HINT", 2000);
+            return;
+        }
+        BoardState snapshot = new BoardState(level.getState());
+        hints.request(level.getLevel(), snapshot, hint -> SwingUtilities.invokeLater(() -> {
+            if (level != game.getCurrentLevel() || !snapshot.equals(level.getState())) return;
+            if (hint.status == SolverResult.Status.SOLVED) {
+                canvas.showHint(level, snapshot, hint);
+            } else if (hint.status == SolverResult.Status.UNSOLVABLE) {
+                NeonDialogUI.showToast(this, "当前局面已无法完成<br>按 U 撤销或按 R 重玩", "HINT", 2000);
+            } else {
+                NeonDialogUI.showToast(this, "暂时没有找到提示，请稍后再试", "HINT", 2000);
+            }
+        }));
+    }
+
+    /**
+     * 男孩向指定方向走一步，重绘并自动保存
+     * 方向键和重做都通过此方法移动
+     * @param direction 方向
+     */
+    public void handleDirectionPressed(int direction) {
+        GameLevel level = game.getCurrentLevel();
+        boolean wasDeadlocked = level.isDeadlocked();
+        hints.cancel();  // 局面即将改变，之前的提示作废
+        level.handleKeyPress(direction);
         this.canvas.repaint();
         
         // 自动保存游戏进度
         GameSave.saveGame(game);
+
+        // 这一步把箱子推死了，立即提醒玩家
+        if (!wasDeadlocked && level == game.getCurrentLevel() && level.isDeadlocked()) {
+            NeonDialogUI.showToast(this, "有箱子已被卡死，本关无法完成<br>按 U 撤销或按 R 重玩", "DEADLOCK", 2000);
+        }
     }
 }
@@ -14,6 +14,7 @@ import javax.swing.*;
 import com.sokoban.model.Game;
 import com.sokoban.model.GameLevel;
 import com.sokoban.util.GameSave;
+import com.sokoban.util.ProgressStore;
 import com.sokoban.util.R;
 
 /**
@@ -30,6 +31,7 @@ public class MainMenu extends JFrame {
      */
     public MainMenu(Game game) {
         this.game = game;
+        GameSave.setSlot(GameSave.latestSlot()); // 继续最近保存的存档槽
         initUI(); // 初始化用户界面
     }
 
@@ -141,7 +143,14 @@ public class MainMenu extends JFrame {
         exitButton.setCursor(new Cursor(Cursor.HAND_CURSOR)); // 设置鼠标样式
         exitButton.addActionListener(e -> System.exit(0)); // 添加点击事件
 
+        // 存档进度 - 显示在继续游戏按钮下方，只读取存档索引
+        JLabel progressLabel = new JLabel(progressText());
+        progressLabel.setBounds(105, 458, 420, 30);
+        progressLabel.setFont(new Font("宋体", Font.BOLD, 14));
+        progressLabel.setForeground(new Color(25, 25, 112));
+
         buttonPanel.add(continueButton); // 将继续游戏按钮添加到面板
+        buttonPanel.add(progressLabel); // 将存档进度添加到面板
         buttonPanel.add(exitButton); // 将退出游戏按钮添加到面板
         
         // 将主面板和按钮面板添加到背景面板
@@ -151,6 +160,21 @@ public class MainMenu extends JFrame {
         setContentPane(backgroundPanel); // 设置背景面板为内容面板
     }
 
+    /**
+     * 生成当前存档槽的进度说明
+     * @return 进度说明，没有存档时为空字符串
+     */
+    private String progressText() {
+        ProgressStore.SlotInfo info = GameSave.getSlotInfo(GameSave.getSlot());
+        if (info == null) return "";
+        int solved = 0;
+        for (ProgressStore.LevelProgress p : GameSave.getLevelProgress()) {
+            if (p.isSolved()) solved++;
+        }
+        return String.format("存档槽 %d · 第 %d 关 · %d 步 · 已通关 %d/%d",
+                GameSave.getSlot() + 1, info.level, info.steps, solved, GameSave.LEVEL_COUNT);
+    }
+
     /**
      * 创建菜单按钮
      * @param text 按钮文本